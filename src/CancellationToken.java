@@ -0,0 +1,13 @@
+// Lets another thread stop a running solve. The solver polls it, so cancel() returns at once
+// and the solve ends shortly afterwards with the best portfolio found so far.
+public class CancellationToken {
+    private volatile boolean cancelled;
+    
+    public void cancel() {
+        cancelled = true;
+    }
+    
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,34 @@
+import java.util.*;
+
+// What the last KnapsackDP solve computed: table cells filled (rows recomputed by the
+// memory-bounded mode count again) and the peak bytes of DP rows held at once.
+public class DPStats {
+    private long cellsComputed;
+    private long tableBytes;
+    private Map<String, Long> phaseNanos;
+    
+    public DPStats(long cellsComputed, long tableBytes, Map<String, Long> phaseNanos) {
+        this.cellsComputed = cellsComputed;
+        this.tableBytes = tableBytes;
+        this.phaseNanos = phaseNanos;
+    }
+    
+    public long getCellsComputed() {
+        return cellsComputed;
+    }
+    
+    public long getTableBytes() {
+        return tableBytes;
+    }
+    
+    // Wall time per phase in nanoseconds, in the order the phases ran
+    public Map<String, Long> getPhaseNanos() {
+        return phaseNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("Cells computed: %d, Table bytes: %d, Phases (ms): %s",
+            cellsComputed, tableBytes, PhaseTimer.toMillis(phaseNanos));
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.*;
+import java.util.stream.*;
+
+// The discrete efficient frontier of a set of investments: every (risk, return) point that no
+// other portfolio beats with less or equal risk, together with the portfolio behind it.
+// All points come out of a single ParetoFrontier pass over exact risk weights, so no point
+// is lost to SCALE truncation. Points are served lazily in increasing risk: a portfolio is
+// rebuilt from the parent pointers only when it is requested, so memory grows with the
+// number of frontier states rather than with n x W.
+public class EfficientFrontier implements Iterable<KnapsackResult> {
+    private final Investment[] investments;
+    private final ParetoFrontier frontier;
+    
+    // Frontier over all risk levels up to the total risk of every investment
+    public EfficientFrontier(Investment[] investments) {
+        this(investments, new ExactWeights(investments));
+    }
+    
+    // Frontier over risk levels up to maxRisk
+    public EfficientFrontier(Investment[] investments, double maxRisk) {
+        this(investments, new ExactWeights(investments, maxRisk));
+    }
+    
+    private EfficientFrontier(Investment[] investments, ExactWeights exact) {
+        this.investments = investments;
+        double[] values = new double[investments.length];
+        for (int i = 0; i < investments.length; i++) {
+            values[i] = investments[i].getExpectedReturn();
+        }
+        this.frontier = new ParetoFrontier(exact.weights, values, exact.capacity);
+    }
+    
+    // Number of frontier points, including the empty portfolio
+    public int size() {
+        return frontier.size();
+    }
+    
+    // Frontier point 'point' in increasing risk order; both totals strictly increase with it
+    public KnapsackResult get(int point) {
+        if (point < 0 || point >= frontier.size()) {
+            throw new IndexOutOfBoundsException("Frontier point " + point + " of " + frontier.size());
+        }
+        List<Integer> selectedIndices = frontier.selection(point);
+        double totalReturn = 0;
+        double totalRisk = 0;
+        for (int idx : selectedIndices) {
+            totalReturn += investments[idx].getExpectedReturn();
+            totalRisk += investments[idx].getRiskFactor();
+        }
+        return new KnapsackResult(selectedIndices, totalReturn, totalRisk);
+    }
+    
+    @Override
+    public Iterator<KnapsackResult> iterator() {
+        return new Iterator<KnapsackResult>() {
+            private int next = 0;
+            
+            @Override
+            public boolean hasNext() {
+                return next < frontier.size();
+            }
+            
+            @Override
+            public KnapsackResult next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+    
+    public Stream<KnapsackResult> stream() {
+        return IntStream.range(0, frontier.size()).mapToObj(this::get);
+    }
+}
@@ -0,0 +1,123 @@
+import java.util.*;
+
+// Knapsack DP that uses the risk factors exactly instead of truncating them at a fixed SCALE.
+// Each risk is read as the decimal it was written as, all risks are brought to a common
+// number of decimal places, and the integer weights are divided by their GCD. That keeps
+// the capacity as small as the data allows: risks of 2.5, 7.5 and 10 with a tolerance of 30
+// become weights 1, 3 and 4 with capacity 12. If that table is still too large, or the sparse
+// DP over the reachable (risk, return) states needs less memory, the solver uses the latter.
+// Returns are summed as doubles and never scaled.
+public class ExactKnapsackDP {
+    // Largest table (a row of best returns plus one decision bit per item and capacity cell)
+    // before switching to sparse
+    private static final long MAX_TABLE_BYTES = 1L << 26;
+    
+    private SolverListener listener = SolverListener.NONE;
+    private DPStats lastStats;
+    
+    // Receives phase timings and the table statistics of every solve
+    public void setListener(SolverListener listener) {
+        this.listener = listener;
+    }
+    
+    // Statistics of the most recent solve, or null before the first one. For the sparse DP
+    // the cells are the frontier states kept and the bytes their parent pointers plus the
+    // final level.
+    public DPStats getLastStats() {
+        return lastStats;
+    }
+    
+    public KnapsackResult solve(Investment[] investments, double riskTolerance) {
+        int n = investments.length;
+        PhaseTimer timer = new PhaseTimer(listener, getClass().getSimpleName());
+        ExactWeights exact = new ExactWeights(investments, riskTolerance);
+        long[] weights = exact.weights;
+        long W = exact.capacity;
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = investments[i].getExpectedReturn();
+        }
+        timer.end("scale");
+        
+        List<Integer> selectedIndices;
+        long cellsComputed = 0;
+        long bytes = 0;
+        if (W < 0) {
+            selectedIndices = new ArrayList<>();
+        } else if (tableBytes(n, W) <= Math.min(MAX_TABLE_BYTES, frontierBytes(n, W))) {
+            selectedIndices = solveTable(weights, values, (int) W, timer);
+            cellsComputed = (long) n * (W + 1);
+            bytes = (long) tableBytes(n, W);
+        } else {
+            ParetoFrontier frontier = new ParetoFrontier(weights, values, W);
+            timer.end("fill");
+            selectedIndices = frontier.selection(frontier.size() - 1);
+            cellsComputed = frontier.statesBuilt();
+            bytes = 4 * frontier.statesBuilt() + 16L * frontier.size();
+        }
+        timer.end("backtrack");
+        
+        double totalReturn = 0;
+        double totalRisk = 0;
+        for (int idx : selectedIndices) {
+            totalReturn += investments[idx].getExpectedReturn();
+            totalRisk += investments[idx].getRiskFactor();
+        }
+        lastStats = new DPStats(cellsComputed, bytes, timer.phases());
+        listener.onTableCompleted(getClass().getSimpleName(), lastStats);
+        return new KnapsackResult(selectedIndices, totalReturn, totalRisk);
+    }
+    
+    // Memory of solveTable, in doubles so a huge capacity cannot overflow
+    private static double tableBytes(int n, long W) {
+        return 8.0 * (W + 1.0) + 8.0 * n * ((W >>> 6) + 1.0);
+    }
+    
+    // Most memory the sparse DP can need: level i has at most min(2^i, W + 1) states, each kept
+    // as a 4-byte parent pointer, plus a weight and a value per state of the widest level
+    private static double frontierBytes(int n, long W) {
+        double states = 0;
+        double widest = 0;
+        for (int i = 1; i <= n; i++) {
+            double level = Math.min(Math.pow(2, i), W + 1.0);
+            states += level;
+            widest = Math.max(widest, level);
+        }
+        return 4 * states + 16 * widest;
+    }
+    
+    // One rolling row of best returns plus one decision bit per (item, capacity) cell
+    private List<Integer> solveTable(long[] weights, double[] values, int W, PhaseTimer timer) {
+        int n = weights.length;
+        int stride = (W >>> 6) + 1;
+        double[] best = new double[W + 1];
+        long[] taken = new long[n * stride];
+        
+        for (int i = 0; i < n; i++) {
+            if (weights[i] > W) {
+                continue;
+            }
+            int wi = (int) weights[i];
+            for (int w = W; w >= wi; w--) {
+                double candidate = best[w - wi] + values[i];
+                if (candidate > best[w]) {
+                    best[w] = candidate;
+                    taken[i * stride + (w >>> 6)] |= 1L << w;
+                }
+            }
+        }
+        timer.end("fill");
+        
+        // Backtrack to find selected investments
+        List<Integer> selectedIndices = new ArrayList<>();
+        int remainingCapacity = W;
+        for (int i = n - 1; i >= 0; i--) {
+            if ((taken[i * stride + (remainingCapacity >>> 6)] & (1L << remainingCapacity)) != 0) {
+                selectedIndices.add(i);
+                remainingCapacity -= (int) weights[i];
+            }
+        }
+        Collections.reverse(selectedIndices);
+        return selectedIndices;
+    }
+}
@@ -0,0 +1,76 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+// Risk factors as exact integer weights. Each risk is read as the decimal it was written as,
+// all risks (and the tolerance, if any) are brought to a common number of decimal places,
+// and the weights are divided by their GCD so the capacity stays as small as the data allows.
+class ExactWeights {
+    final long[] weights;
+    // Tolerance in the same units, rounded down and at most the total weight; the total weight
+    // when there is no tolerance, -1 when the tolerance is negative
+    final long capacity;
+    
+    ExactWeights(Investment[] investments) {
+        this(risks(investments), null);
+    }
+    
+    ExactWeights(Investment[] investments, double riskTolerance) {
+        this(risks(investments), BigDecimal.valueOf(riskTolerance));
+    }
+    
+    ExactWeights(InstrumentTable investments, double riskTolerance) {
+        this(investments.risks, BigDecimal.valueOf(riskTolerance));
+    }
+    
+    private ExactWeights(double[] risks, BigDecimal exactTolerance) {
+        int n = risks.length;
+        
+        // Common number of decimal places across the risks and the tolerance
+        BigDecimal[] exactRisks = new BigDecimal[n];
+        int decimals = exactTolerance == null ? 0 : Math.max(0, exactTolerance.stripTrailingZeros().scale());
+        for (int i = 0; i < n; i++) {
+            exactRisks[i] = BigDecimal.valueOf(risks[i]);
+            decimals = Math.max(decimals, exactRisks[i].stripTrailingZeros().scale());
+        }
+        
+        weights = new long[n];
+        long gcd = 0;
+        long total = 0;
+        try {
+            for (int i = 0; i < n; i++) {
+                weights[i] = exactRisks[i].movePointRight(decimals).longValueExact();
+                gcd = BigInteger.valueOf(gcd).gcd(BigInteger.valueOf(weights[i])).longValue();
+            }
+            if (gcd == 0) {
+                gcd = 1;
+            }
+            for (int i = 0; i < n; i++) {
+                weights[i] /= gcd;
+                total = Math.addExact(total, weights[i]);
+            }
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(
+                "Risk factors cannot be represented exactly with " + decimals + " decimal places", e);
+        }
+        
+        if (exactTolerance == null) {
+            capacity = total;
+        } else if (exactTolerance.signum() < 0) {
+            capacity = -1;
+        } else {
+            // No selection can use a fractional unit or more than the total, so capping the
+            // capacity at the total keeps it in a long whatever the tolerance
+            capacity = exactTolerance.movePointRight(decimals)
+                .divideToIntegralValue(BigDecimal.valueOf(gcd))
+                .min(BigDecimal.valueOf(total)).longValueExact();
+        }
+    }
+    
+    private static double[] risks(Investment[] investments) {
+        double[] risks = new double[investments.length];
+        for (int i = 0; i < risks.length; i++) {
+            risks[i] = investments[i].getRiskFactor();
+        }
+        return risks;
+    }
+}
@@ -0,0 +1,135 @@
+import java.util.*;
+
+// Seeded generator for benchmark and test instances. Risks are drawn from [1, 10] with two
+// decimals so that every solver, including KnapsackDP with SCALE = 100, sees the same problem.
+// The same seed always gives the same instance.
+public class InstanceGenerator {
+    public enum Family {
+        // Return independent of risk
+        UNCORRELATED,
+        // Return = risk +/- up to 2
+        WEAKLY_CORRELATED,
+        // Return = risk + 2, the classic hard case for branch and bound
+        STRONGLY_CORRELATED,
+        // Uncorrelated, spread over many small sectors that all carry a max constraint
+        SECTOR_HEAVY
+    }
+    
+    private static final int SECTORS = 10;
+    private static final int HEAVY_SECTORS = 50;
+    // Sectors that need at least one investment; few enough to stay feasible at small capacities
+    private static final int REQUIRED_SECTORS = 3;
+    
+    private final Random random;
+    
+    public InstanceGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+    
+    public Investment[] generate(Family family, int n) {
+        return generate(family, n, 2);
+    }
+    
+    // Risks and returns with the given number of decimals instead of two, e.g. to get risks
+    // too fine-grained for KnapsackDP's table
+    public Investment[] generate(Family family, int n, int decimals) {
+        return generate(family, n, decimals, 1);
+    }
+    
+    // Several risk dimensions per investment, each drawn from [1, 10] with the given number of
+    // decimals; the family correlates the return with the mean of the dimensions. One dimension
+    // gives plain single-risk investments.
+    public Investment[] generate(Family family, int n, int decimals, int dimensions) {
+        int sectors = family == Family.SECTOR_HEAVY ? HEAVY_SECTORS : SECTORS;
+        Investment[] investments = new Investment[n];
+        for (int i = 0; i < n; i++) {
+            double[] risks = new double[dimensions];
+            double meanRisk = 0;
+            for (int d = 0; d < dimensions; d++) {
+                risks[d] = round(1 + random.nextDouble() * 9, decimals);
+                meanRisk += risks[d] / dimensions;
+            }
+            double expectedReturn;
+            switch (family) {
+                case WEAKLY_CORRELATED:
+                    expectedReturn = round(Math.max(0.1, meanRisk + random.nextDouble() * 4 - 2), decimals);
+                    break;
+                case STRONGLY_CORRELATED:
+                    expectedReturn = round(meanRisk + 2, decimals);
+                    break;
+                default:
+                    expectedReturn = round(1 + random.nextDouble() * 19, decimals);
+                    break;
+            }
+            String sector = "Sector " + random.nextInt(sectors);
+            investments[i] = dimensions == 1
+                ? new Investment("Instrument " + i, expectedReturn, risks[0], sector)
+                : new Investment("Instrument " + i, expectedReturn, risks, sector);
+        }
+        return investments;
+    }
+    
+    // Tolerance as a fraction of the total risk of all investments, rounded to two decimals
+    public static double tolerance(Investment[] investments, double fraction) {
+        double totalRisk = 0;
+        for (Investment inv : investments) {
+            totalRisk += inv.getRiskFactor();
+        }
+        return cents(totalRisk * fraction);
+    }
+    
+    // One capacity per risk dimension, each a fraction of that dimension's total
+    public static double[] capacities(Investment[] investments, double fraction) {
+        double[] totals = new double[investments.length == 0 ? 1 : investments[0].getRiskDimensions()];
+        for (Investment inv : investments) {
+            for (int d = 0; d < totals.length; d++) {
+                totals[d] += inv.getRiskFactor(d);
+            }
+        }
+        double[] capacities = new double[totals.length];
+        for (int d = 0; d < totals.length; d++) {
+            capacities[d] = cents(totals[d] * fraction);
+        }
+        return capacities;
+    }
+    
+    // At least one investment from each of the first REQUIRED_SECTORS sectors
+    public static Map<String, Integer> minInvestments(Investment[] investments) {
+        Map<String, Integer> min = new HashMap<>();
+        for (String sector : sectors(investments)) {
+            if (min.size() == REQUIRED_SECTORS) {
+                break;
+            }
+            min.put(sector, 1);
+        }
+        return min;
+    }
+    
+    // At most twice the sector's fair share of the investments
+    public static Map<String, Integer> maxInvestments(Investment[] investments) {
+        Set<String> sectors = sectors(investments);
+        int cap = Math.max(2, 2 * investments.length / Math.max(1, sectors.size()));
+        Map<String, Integer> max = new HashMap<>();
+        for (String sector : sectors) {
+            max.put(sector, cap);
+        }
+        return max;
+    }
+    
+    private static Set<String> sectors(Investment[] investments) {
+        Set<String> sectors = new TreeSet<>();
+        for (Investment inv : investments) {
+            sectors.add(inv.getSector());
+        }
+        return sectors;
+    }
+    
+    private static double cents(double value) {
+        return round(value, 2);
+    }
+    
+    private static double round(double value, int decimals) {
+        double scale = Math.pow(10, decimals);
+        return Math.round(value * scale) / scale;
+    }
+}
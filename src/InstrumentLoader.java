@@ -0,0 +1,410 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Loads instrument universes into an InstrumentTable straight from memory-mapped files, without
+// creating an Investment per row.
+//
+// CSV: one instrument per line as name,expectedReturn,riskFactor,sector (the order of the
+// Investment constructor), an optional header line, fields optionally in double quotes.
+// Names are skipped. Plain decimals are parsed from the mapped bytes; anything else
+// (exponents, more than 15 significant digits) goes through Double.parseDouble.
+//
+// Binary (little-endian), written by writeBinary:
+//   int magic 'KNPT', int version 1, int rows, int sectors,
+//   per sector: int length + UTF-8 bytes,
+//   double[rows] returns, double[rows] risks, int[rows] sector ids
+// Tables with several risk dimensions are written as version 2, which adds int dimensions
+// (at most 1024) after the sector count and has one double[rows] risk column per dimension.
+// CSV files hold a single risk dimension.
+// Each column is one bulk copy from the mapping, so loading is bound by disk speed.
+public class InstrumentLoader {
+    private static final int MAGIC = 0x4B4E5054;
+    private static final int VERSION = 1;
+    private static final int MULTI_RISK_VERSION = 2;
+    // Most risk dimensions a binary file may have, so a corrupt count cannot allocate
+    // millions of columns for an empty table
+    private static final int MAX_RISK_DIMENSIONS = 1024;
+    // CSV files are mapped in windows of this size; a line crossing a window end is re-read
+    private static final long CSV_WINDOW = 1L << 28;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    
+    public static InstrumentTable loadCsv(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            CsvColumns columns = new CsvColumns();
+            long size = channel.size();
+            long position = 0;
+            boolean header = true;
+            while (position < size) {
+                long length = Math.min(CSV_WINDOW, size - position);
+                boolean last = position + length == size;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int consumed = columns.parse(buffer, last, header, position);
+                if (consumed == 0) {
+                    throw new IOException("Line at byte " + position + " is longer than " + CSV_WINDOW + " bytes");
+                }
+                header = false;
+                position += consumed;
+            }
+            return columns.toTable();
+        }
+    }
+    
+    // Same format as loadCsv for CSV already in memory (bytes 0 to limit), e.g. a request body
+    public static InstrumentTable parseCsv(ByteBuffer buffer) throws IOException {
+        CsvColumns columns = new CsvColumns();
+        columns.parse(buffer, true, true, 0);
+        return columns.toTable();
+    }
+    
+    public static InstrumentTable loadBinary(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Binary instrument files are limited to 2 GB: " + path);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                .order(ByteOrder.LITTLE_ENDIAN);
+            try {
+                int magic = buffer.getInt();
+                int version = buffer.getInt();
+                if (magic != MAGIC || (version != VERSION && version != MULTI_RISK_VERSION)) {
+                    throw new IOException("Not an instrument table file: " + path);
+                }
+                int rows = buffer.getInt();
+                int sectors = buffer.getInt();
+                int dimensions = version == MULTI_RISK_VERSION ? buffer.getInt() : 1;
+                // The counts are checked against the bytes left before anything is allocated
+                checkHeader(rows >= 0 && sectors >= 0 && sectors <= buffer.remaining() / 4, path);
+                checkHeader(dimensions >= 1 && dimensions <= MAX_RISK_DIMENSIONS, path);
+                String[] sectorNames = new String[sectors];
+                for (int s = 0; s < sectors; s++) {
+                    int length = buffer.getInt();
+                    checkHeader(length >= 0 && length <= buffer.remaining(), path);
+                    byte[] bytes = new byte[length];
+                    buffer.get(bytes);
+                    sectorNames[s] = new String(bytes, StandardCharsets.UTF_8);
+                }
+                long rowBytes = 12L + 8L * dimensions;
+                checkHeader(rows <= buffer.remaining() / rowBytes, path);
+                double[] returns = new double[rows];
+                double[][] riskColumns = new double[dimensions][rows];
+                int[] sectorIds = new int[rows];
+                buffer.asDoubleBuffer().get(returns);
+                buffer.position(buffer.position() + rows * 8);
+                for (double[] risks : riskColumns) {
+                    buffer.asDoubleBuffer().get(risks);
+                    buffer.position(buffer.position() + rows * 8);
+                }
+                buffer.asIntBuffer().get(sectorIds);
+                return new InstrumentTable(returns, riskColumns, sectorIds, sectorNames, null);
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                throw new IOException("Corrupt instrument table file: " + path, e);
+            }
+        }
+    }
+    
+    private static void checkHeader(boolean valid, Path path) throws IOException {
+        if (!valid) {
+            throw new IOException("Corrupt instrument table file: " + path);
+        }
+    }
+    
+    public static void writeBinary(InstrumentTable table, Path path) throws IOException {
+        int rows = table.size();
+        int dimensions = table.getRiskDimensions();
+        if (dimensions > MAX_RISK_DIMENSIONS) {
+            throw new IOException("Binary instrument files hold at most " + MAX_RISK_DIMENSIONS
+                + " risk dimensions, got " + dimensions);
+        }
+        byte[][] sectorBytes = new byte[table.getSectorCount()][];
+        long size = dimensions == 1 ? 16 : 20;
+        for (int s = 0; s < sectorBytes.length; s++) {
+            sectorBytes[s] = table.getSectorName(s).getBytes(StandardCharsets.UTF_8);
+            size += 4 + sectorBytes[s].length;
+        }
+        size += rows * (12L + 8L * dimensions);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Binary instrument files are limited to 2 GB");
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(dimensions == 1 ? VERSION : MULTI_RISK_VERSION)
+            .putInt(rows).putInt(sectorBytes.length);
+        if (dimensions > 1) {
+            buffer.putInt(dimensions);
+        }
+        for (byte[] bytes : sectorBytes) {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+        buffer.asDoubleBuffer().put(table.returns);
+        buffer.position(buffer.position() + rows * 8);
+        for (double[] risks : table.riskColumns) {
+            buffer.asDoubleBuffer().put(risks);
+            buffer.position(buffer.position() + rows * 8);
+        }
+        buffer.asIntBuffer().put(table.sectorIds);
+        buffer.rewind();
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+    
+    // Growing columns filled line by line from mapped CSV windows
+    private static class CsvColumns {
+        double[] returns = new double[1024];
+        double[] risks = new double[1024];
+        int[] sectorIds = new int[1024];
+        int rows;
+        final Map<String, Integer> dictionary = new HashMap<>();
+        final List<String> sectorNames = new ArrayList<>();
+        // Open-addressing index over the distinct raw byte spellings of the sector field (slot
+        // holds spelling + 1, 0 = empty), so a repeated sector is found without allocating
+        int[] slots = new int[64];
+        final List<byte[]> spellings = new ArrayList<>();
+        int[] spellingToId = new int[32];
+        // Field bounds of the current line, [start, end) without quotes
+        final int[] fieldStart = new int[4];
+        final int[] fieldEnd = new int[4];
+        final boolean[] fieldQuoted = new boolean[4];
+        
+        // Parses the complete lines of the window and returns the number of bytes they span.
+        // 'offset' is the window's position in the file, for error messages.
+        int parse(ByteBuffer buffer, boolean last, boolean header, long offset) throws IOException {
+            int limit = buffer.limit();
+            int lineStart = 0;
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                boolean quoted = false;
+                while (lineEnd < limit) {
+                    byte b = buffer.get(lineEnd);
+                    if (b == '"') {
+                        quoted = !quoted;
+                    } else if (b == '\n' && !quoted) {
+                        break;
+                    }
+                    lineEnd++;
+                }
+                if (lineEnd == limit && !last) {
+                    break; // incomplete line, re-read from the next window
+                }
+                int next = lineEnd < limit ? lineEnd + 1 : lineEnd;
+                if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                    lineEnd--;
+                }
+                if (lineEnd > lineStart) {
+                    splitFields(buffer, lineStart, lineEnd, offset);
+                    boolean isHeader = header && rows == 0 && !isNumber(buffer, 1);
+                    if (!isHeader) {
+                        addRow(buffer, offset + lineStart);
+                    }
+                }
+                header = header && lineEnd == lineStart;
+                lineStart = next;
+            }
+            return lineStart;
+        }
+        
+        private void splitFields(ByteBuffer buffer, int start, int end, long offset) throws IOException {
+            int field = 0;
+            int i = start;
+            while (true) {
+                if (field == 4) {
+                    throw new IOException("Expected 4 fields in the line at byte " + (offset + start));
+                }
+                boolean quoted = i < end && buffer.get(i) == '"';
+                fieldQuoted[field] = quoted;
+                if (quoted) {
+                    i++;
+                    fieldStart[field] = i;
+                    while (i < end && !(buffer.get(i) == '"' && (i + 1 == end || buffer.get(i + 1) != '"'))) {
+                        i += buffer.get(i) == '"' ? 2 : 1;
+                    }
+                    fieldEnd[field] = i;
+                    i++;
+                } else {
+                    fieldStart[field] = i;
+                    while (i < end && buffer.get(i) != ',') {
+                        i++;
+                    }
+                    fieldEnd[field] = i;
+                }
+                field++;
+                if (i >= end) {
+                    break;
+                }
+                i++; // skip the comma
+            }
+            if (field != 4) {
+                throw new IOException("Expected 4 fields in the line at byte " + (offset + start));
+            }
+        }
+        
+        private void addRow(ByteBuffer buffer, long lineOffset) throws IOException {
+            if (rows == returns.length) {
+                returns = Arrays.copyOf(returns, rows * 2);
+                risks = Arrays.copyOf(risks, rows * 2);
+                sectorIds = Arrays.copyOf(sectorIds, rows * 2);
+            }
+            try {
+                returns[rows] = parseDouble(buffer, fieldStart[1], fieldEnd[1]);
+                risks[rows] = parseDouble(buffer, fieldStart[2], fieldEnd[2]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid number in the line at byte " + lineOffset, e);
+            }
+            sectorIds[rows] = sectorId(buffer);
+            rows++;
+        }
+        
+        private int sectorId(ByteBuffer buffer) {
+            int start = fieldStart[3];
+            int end = fieldEnd[3];
+            if (!fieldQuoted[3]) {
+                while (start < end && buffer.get(start) == ' ') {
+                    start++;
+                }
+                while (end > start && buffer.get(end - 1) == ' ') {
+                    end--;
+                }
+            }
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+            int mask = slots.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (slots[slot] != 0) {
+                int spelling = slots[slot] - 1;
+                if (matches(buffer, start, end, spellings.get(spelling))) {
+                    return spellingToId[spelling];
+                }
+                slot = (slot + 1) & mask;
+            }
+            
+            // New spelling: decode it, then map it to the id of an equal name seen before
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(start + i);
+            }
+            String sector = new String(bytes, StandardCharsets.UTF_8);
+            if (fieldQuoted[3]) {
+                sector = sector.replace("\"\"", "\"");
+            }
+            Integer id = dictionary.get(sector);
+            if (id == null) {
+                id = sectorNames.size();
+                dictionary.put(sector, id);
+                sectorNames.add(sector);
+            }
+            // Quoted and unquoted spellings of a name are separate entries with the same id
+            if (spellings.size() == spellingToId.length) {
+                spellingToId = Arrays.copyOf(spellingToId, spellingToId.length * 2);
+            }
+            spellingToId[spellings.size()] = id;
+            spellings.add(bytes);
+            slots[slot] = spellings.size();
+            if (spellings.size() * 2 > slots.length) {
+                rehash();
+            }
+            return id;
+        }
+        
+        private boolean matches(ByteBuffer buffer, int start, int end, byte[] spelling) {
+            if (spelling.length != end - start) {
+                return false;
+            }
+            for (int i = 0; i < spelling.length; i++) {
+                if (buffer.get(start + i) != spelling[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int spelling = 0; spelling < spellings.size(); spelling++) {
+                int hash = 0;
+                for (byte b : spellings.get(spelling)) {
+                    hash = 31 * hash + b;
+                }
+                int slot = (hash ^ (hash >>> 16)) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = spelling + 1;
+            }
+        }
+        
+        private boolean isNumber(ByteBuffer buffer, int field) {
+            try {
+                parseDouble(buffer, fieldStart[field], fieldEnd[field]);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        
+        InstrumentTable toTable() {
+            return new InstrumentTable(Arrays.copyOf(returns, rows), Arrays.copyOf(risks, rows),
+                Arrays.copyOf(sectorIds, rows), sectorNames.toArray(new String[0]), null);
+        }
+    }
+    
+    // Up to 15 significant digits and 22 decimals, digits / 10^decimals is one correctly
+    // rounded division of two exact doubles, the same value Double.parseDouble returns
+    static double parseDouble(ByteBuffer buffer, int start, int end) {
+        while (start < end && buffer.get(start) == ' ') {
+            start++;
+        }
+        while (end > start && buffer.get(end - 1) == ' ') {
+            end--;
+        }
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        long digits = 0;
+        int significant = 0;
+        int decimals = -1;
+        boolean any = false;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                any = true;
+                if (digits != 0 || b != '0') {
+                    significant++;
+                }
+                digits = digits * 10 + (b - '0');
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                break;
+            }
+        }
+        if (i == end && any && significant <= 15 && decimals <= 22) {
+            double value = decimals > 0 ? digits / POWERS_OF_TEN[decimals] : digits;
+            return negative ? -value : value;
+        }
+        byte[] bytes = new byte[end - start];
+        for (int k = 0; k < bytes.length; k++) {
+            bytes[k] = buffer.get(start + k);
+        }
+        return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+    }
+}
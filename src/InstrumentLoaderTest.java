@@ -0,0 +1,108 @@
+import java.io.IOException;
+import java.nio.*;
+import java.nio.file.*;
+
+// Checks that InstrumentLoader.loadBinary turns malformed headers (negative, huge or
+// overflowing row, sector, name-length and dimension counts) into its IOException for corrupt
+// files instead of allocating from them, and that well-formed version 1 and 2 files still
+// round-trip. Exits with status 1 if any case fails.
+//
+// Usage: java -Xmx512m -cp bin InstrumentLoaderTest
+public class InstrumentLoaderTest {
+    private static final int MAGIC = 0x4B4E5054;
+    
+    private static int failures = 0;
+    
+    public static void main(String[] args) throws IOException {
+        expectCorrupt("negative rows", header(1, -1, 0, 0));
+        expectCorrupt("negative sectors", header(1, 0, -5, 0));
+        expectCorrupt("huge rows", header(1, Integer.MAX_VALUE, 0, 0));
+        expectCorrupt("huge sectors", header(1, 0, Integer.MAX_VALUE, 0));
+        expectCorrupt("negative name length", ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(MAGIC).putInt(1).putInt(0).putInt(1).putInt(-1).array());
+        expectCorrupt("huge name length", ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(MAGIC).putInt(1).putInt(0).putInt(1).putInt(Integer.MAX_VALUE).array());
+        expectCorrupt("zero dimensions", header(2, 0, 0, 0));
+        expectCorrupt("negative dimensions", header(2, 1, 0, -3));
+        expectCorrupt("huge dimensions, no rows", header(2, 0, 0, Integer.MAX_VALUE));
+        expectCorrupt("100M dimensions, no rows", header(2, 0, 0, 100_000_000));
+        expectCorrupt("huge rows and dimensions", header(2, 600_000_000, 0, Integer.MAX_VALUE));
+        expectCorrupt("rows beyond the file", header(2, 600_000_000, 0, 1024));
+        
+        roundTrip("single dimension", new Investment[] {
+            new Investment("A", 1.5, 2.5, "Tech"),
+            new Investment("B", 3.0, 4.0, "Energy")
+        });
+        roundTrip("three dimensions", new Investment[] {
+            new Investment("A", 1.5, new double[] {2.5, 0.1, 7}, "Tech"),
+            new Investment("B", 3.0, new double[] {4.0, 0.2, 8}, "Energy")
+        });
+        roundTrip("three dimensions, no rows", new Investment[0]);
+        
+        System.out.println(failures == 0 ? "All cases passed" : failures + " case(s) failed");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+    
+    // Magic, version, rows, sectors and, for version 2, dimensions, with nothing after them
+    private static byte[] header(int version, int rows, int sectors, int dimensions) {
+        ByteBuffer buffer = ByteBuffer.allocate(version == 2 ? 20 : 16).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(version).putInt(rows).putInt(sectors);
+        if (version == 2) {
+            buffer.putInt(dimensions);
+        }
+        return buffer.array();
+    }
+    
+    private static void expectCorrupt(String name, byte[] contents) throws IOException {
+        Path path = Files.createTempFile("instruments", ".bin");
+        try {
+            Files.write(path, contents);
+            InstrumentLoader.loadBinary(path);
+            fail(name, "loaded without an error");
+        } catch (IOException e) {
+            if (e.getMessage().startsWith("Corrupt instrument table file")) {
+                System.out.println("ok   " + name);
+            } else {
+                fail(name, e.toString());
+            }
+        } catch (RuntimeException | OutOfMemoryError e) {
+            fail(name, e.toString());
+        } finally {
+            Files.delete(path);
+        }
+    }
+    
+    private static void roundTrip(String name, Investment[] investments) throws IOException {
+        InstrumentTable table = investments.length > 0
+            ? InstrumentTable.of(investments)
+            : new InstrumentTable(new double[0], new double[3][0], new int[0], new String[0], null);
+        Path path = Files.createTempFile("instruments", ".bin");
+        try {
+            InstrumentLoader.writeBinary(table, path);
+            InstrumentTable loaded = InstrumentLoader.loadBinary(path);
+            boolean same = loaded.size() == table.size()
+                && loaded.getRiskDimensions() == table.getRiskDimensions();
+            for (int row = 0; same && row < table.size(); row++) {
+                same = loaded.returns[row] == table.returns[row]
+                    && loaded.getSectorName(loaded.sectorIds[row]).equals(table.getSectorName(table.sectorIds[row]));
+                for (int d = 0; same && d < table.getRiskDimensions(); d++) {
+                    same = loaded.getRiskFactor(row, d) == table.getRiskFactor(row, d);
+                }
+            }
+            if (same) {
+                System.out.println("ok   " + name);
+            } else {
+                fail(name, "loaded table differs from the written one");
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+    
+    private static void fail(String name, String reason) {
+        failures++;
+        System.out.println("FAIL " + name + ": " + reason);
+    }
+}
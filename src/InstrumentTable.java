@@ -0,0 +1,188 @@
+import java.util.*;
+
+// Immutable column store for an instrument universe: expected returns and risk factors as
+// primitive arrays and sectors dictionary-encoded as int ids into a table of sector names.
+// Row i is the i-th instrument, so indices in a KnapsackResult computed on a table refer to
+// its rows. Names are optional: loaders leave them out to save memory for large universes.
+// A table may hold several risk dimensions, one column each; the single-capacity solvers
+// use the first.
+public class InstrumentTable {
+    final double[] returns;
+    // Same array as riskColumns[0]
+    final double[] risks;
+    // riskColumns[d][row]: risk of each row in dimension d
+    final double[][] riskColumns;
+    final int[] sectorIds;
+    final String[] sectorNames;
+    // null when the instruments were loaded without names
+    final String[] names;
+    // Rows by descending return-to-risk ratio, built on first use and then shared
+    private volatile int[] ratioOrder;
+    
+    InstrumentTable(double[] returns, double[] risks, int[] sectorIds, String[] sectorNames, String[] names) {
+        this(returns, new double[][] {risks}, sectorIds, sectorNames, names);
+    }
+    
+    InstrumentTable(double[] returns, double[][] riskColumns, int[] sectorIds, String[] sectorNames,
+                    String[] names) {
+        if (riskColumns.length == 0) {
+            throw new IllegalArgumentException("At least one risk dimension is required");
+        }
+        for (double[] column : riskColumns) {
+            if (column.length != returns.length) {
+                throw new IllegalArgumentException("Columns must all have the same length");
+            }
+        }
+        if (sectorIds.length != returns.length || (names != null && names.length != returns.length)) {
+            throw new IllegalArgumentException("Columns must all have the same length");
+        }
+        for (int id : sectorIds) {
+            if (id < 0 || id >= sectorNames.length) {
+                throw new IllegalArgumentException("Sector id " + id + " is not in the dictionary");
+            }
+        }
+        this.returns = returns;
+        this.risks = riskColumns[0];
+        this.riskColumns = riskColumns;
+        this.sectorIds = sectorIds;
+        this.sectorNames = sectorNames;
+        this.names = names;
+    }
+    
+    // Column copy of the investments; sector ids follow the order of first appearance. All
+    // investments must have the same number of risk dimensions.
+    public static InstrumentTable of(Investment[] investments) {
+        int n = investments.length;
+        int dimensions = n > 0 ? investments[0].getRiskDimensions() : 1;
+        double[] returns = new double[n];
+        double[][] riskColumns = new double[dimensions][n];
+        int[] sectorIds = new int[n];
+        String[] names = new String[n];
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> sectorNames = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            returns[i] = investments[i].getExpectedReturn();
+            if (investments[i].getRiskDimensions() != dimensions) {
+                throw new IllegalArgumentException("Investment " + i + " has "
+                    + investments[i].getRiskDimensions() + " risk dimensions, expected " + dimensions);
+            }
+            for (int d = 0; d < dimensions; d++) {
+                riskColumns[d][i] = investments[i].getRiskFactor(d);
+            }
+            names[i] = investments[i].getName();
+            String sector = investments[i].getSector();
+            Integer id = dictionary.get(sector);
+            if (id == null) {
+                id = sectorNames.size();
+                dictionary.put(sector, id);
+                sectorNames.add(sector);
+            }
+            sectorIds[i] = id;
+        }
+        return new InstrumentTable(returns, riskColumns, sectorIds, sectorNames.toArray(new String[0]), names);
+    }
+    
+    public int size() {
+        return returns.length;
+    }
+    
+    public double getExpectedReturn(int row) {
+        return returns[row];
+    }
+    
+    public double getRiskFactor(int row) {
+        return risks[row];
+    }
+    
+    public int getRiskDimensions() {
+        return riskColumns.length;
+    }
+    
+    public double getRiskFactor(int row, int dimension) {
+        return riskColumns[dimension][row];
+    }
+    
+    public int getSectorId(int row) {
+        return sectorIds[row];
+    }
+    
+    public String getSector(int row) {
+        return sectorNames[sectorIds[row]];
+    }
+    
+    public int getSectorCount() {
+        return sectorNames.length;
+    }
+    
+    public String getSectorName(int sectorId) {
+        return sectorNames[sectorId];
+    }
+    
+    // The instrument's name, or "Instrument <row>" when the table has no names
+    public String getName(int row) {
+        return names != null ? names[row] : "Instrument " + row;
+    }
+    
+    // Row ids by descending return-to-risk ratio, equal ratios in row order; the order every
+    // ratio-based solver searches in
+    public int[] getRatioOrder() {
+        return ratioOrder().clone();
+    }
+    
+    // Shared, not copied: callers must not modify it
+    int[] ratioOrder() {
+        int[] order = ratioOrder;
+        if (order == null) {
+            order = sortByRatio();
+            ratioOrder = order;
+        }
+        return order;
+    }
+    
+    // Bottom-up merge sort of the row ids: stable, so it gives the same order as sorting the
+    // Investment objects with the same comparator
+    private int[] sortByRatio() {
+        int n = returns.length;
+        double[] ratios = new double[n];
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            ratios[i] = returns[i] / risks[i];
+            order[i] = i;
+        }
+        int[] merged = new int[n];
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n; lo += 2 * width) {
+                int mid = Math.min(lo + width, n);
+                int hi = Math.min(lo + 2 * width, n);
+                int a = lo;
+                int b = mid;
+                int k = lo;
+                while (a < mid && b < hi) {
+                    merged[k++] = Double.compare(ratios[order[a]], ratios[order[b]]) < 0 ? order[b++] : order[a++];
+                }
+                while (a < mid) {
+                    merged[k++] = order[a++];
+                }
+                while (b < hi) {
+                    merged[k++] = order[b++];
+                }
+            }
+            int[] tmp = order;
+            order = merged;
+            merged = tmp;
+        }
+        return order;
+    }
+    
+    // Materializes one row, e.g. to print a selected portfolio
+    public Investment toInvestment(int row) {
+        if (riskColumns.length == 1) {
+            return new Investment(getName(row), returns[row], risks[row], getSector(row));
+        }
+        double[] riskFactors = new double[riskColumns.length];
+        for (int d = 0; d < riskFactors.length; d++) {
+            riskFactors[d] = riskColumns[d][row];
+        }
+        return new Investment(getName(row), returns[row], riskFactors, getSector(row));
+    }
+}
@@ -3,6 +3,9 @@ public class Investment {
     private double expectedReturn;
     private double riskFactor;
     private String sector;
+    // Risk per dimension (e.g. volatility, VaR contribution, liquidity) for
+    // MultiDimensionalBranchAndBound; null when the investment has only riskFactor
+    private double[] riskFactors;
     
     public Investment(String name, double expectedReturn, double riskFactor, String sector) {
         this.name = name;
@@ -11,6 +14,13 @@ public class Investment {
         this.sector = sector;
     }
     
+    // Several risk dimensions; the first one is also the riskFactor the single-capacity
+    // solvers use
+    public Investment(String name, double expectedReturn, double[] riskFactors, String sector) {
+        this(name, expectedReturn, riskFactors[0], sector);
+        this.riskFactors = riskFactors.clone();
+    }
+    
     public String getName() {
         return name;
     }
@@ -23,6 +33,20 @@ public class Investment {
         return riskFactor;
     }
     
+    public int getRiskDimensions() {
+        return riskFactors == null ? 1 : riskFactors.length;
+    }
+    
+    public double getRiskFactor(int dimension) {
+        if (riskFactors == null && dimension == 0) {
+            return riskFactor;
+        }
+        if (riskFactors == null) {
+            throw new IndexOutOfBoundsException("Risk dimension " + dimension + " of 1");
+        }
+        return riskFactors[dimension];
+    }
+    
     public String getSector() {
         return sector;
     }
@@ -1,175 +1,332 @@
 import java.util.*;
 
 public class KnapsackBranchAndBound {
+    // Loop iterations between checks of the clock and the cancellation token
+    private static final int LIMIT_CHECK_INTERVAL = 1024;
+    
+    // BEST_FIRST always expands the open node with the highest bound. HYBRID does the same
+    // until the open set reaches its budget, then dives depth-first from the expanded node
+    // until that subtree is exhausted, which keeps the open set at budget + O(n) nodes.
+    public enum SearchStrategy {
+        BEST_FIRST,
+        HYBRID
+    }
+    
+    // DANTZIG is the fractional knapsack bound. MARTELLO_TOTH is tighter: it also decides the
+    // critical item both ways and ignores investments whose sector is already at its maximum,
+    // at the cost of a scan when some sector is saturated.
+    public enum BoundType {
+        DANTZIG,
+        MARTELLO_TOTH
+    }
+    
+    private final SearchStrategy strategy;
+    private final BoundType boundType;
+    private final long maxOpenNodes;
+    private final long maxOpenBytes;
+    private SolverListener listener = SolverListener.NONE;
+    private SearchStats lastStats;
+    // Node storage kept between solves when scratch reuse is on
+    private boolean reuseScratch;
+    private NodePool scratchPool;
+    
+    public KnapsackBranchAndBound() {
+        this(SearchStrategy.BEST_FIRST, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+    
+    public KnapsackBranchAndBound(BoundType boundType) {
+        this(SearchStrategy.BEST_FIRST, Long.MAX_VALUE, Long.MAX_VALUE, boundType);
+    }
+    
+    public KnapsackBranchAndBound(SearchStrategy strategy, long maxOpenNodes) {
+        this(strategy, maxOpenNodes, Long.MAX_VALUE);
+    }
+    
+    // Open-set budget as a node count and as bytes of node storage; the smaller one applies
+    public KnapsackBranchAndBound(SearchStrategy strategy, long maxOpenNodes, long maxOpenBytes) {
+        this(strategy, maxOpenNodes, maxOpenBytes, BoundType.DANTZIG);
+    }
+    
+    public KnapsackBranchAndBound(SearchStrategy strategy, long maxOpenNodes, long maxOpenBytes,
+                                  BoundType boundType) {
+        if (maxOpenNodes <= 0 || maxOpenBytes <= 0) {
+            throw new IllegalArgumentException("Open-set budget must be positive");
+        }
+        this.strategy = strategy;
+        this.boundType = boundType;
+        this.maxOpenNodes = maxOpenNodes;
+        this.maxOpenBytes = maxOpenBytes;
+    }
+    
+    // Receives phase timings, incumbent improvements and the search statistics of every solve
+    public void setListener(SolverListener listener) {
+        this.listener = listener;
+    }
+    
+    // Keeps the node pool between solves and clears it instead of growing a new one from 64
+    // nodes each time. Meant for a solver owned by one thread, e.g. a service worker; the kept
+    // pool is as large as the largest open set so far. Turning it off releases the pool.
+    public void setScratchReuse(boolean reuse) {
+        this.reuseScratch = reuse;
+        if (!reuse) {
+            scratchPool = null;
+        }
+    }
+    
+    // Statistics of the most recent solveWithConstraints call, or null before the first one
+    public SearchStats getLastStats() {
+        return lastStats;
+    }
+    
+    public KnapsackResult solveWithConstraints(
+            Investment[] investments,
+            double riskTolerance,
+            Map<String, Integer> minInvestments,
+            Map<String, Integer> maxInvestments) {
+        return solveWithConstraints(InstrumentTable.of(investments), riskTolerance,
+            minInvestments, maxInvestments, new ArrayList<>());
+    }
+    
     public KnapsackResult solveWithConstraints(
-            Investment[] investments, 
+            InstrumentTable investments,
             double riskTolerance,
             Map<String, Integer> minInvestments,
             Map<String, Integer> maxInvestments) {
+        return solveWithConstraints(investments, riskTolerance, minInvestments, maxInvestments,
+            new ArrayList<>());
+    }
+    
+    // Warm-started search: 'warmStart' holds indices into 'investments' of a known portfolio,
+    // typically the previous solution after a small change to the data. If it still fits the
+    // tolerance and the sector limits and beats the greedy portfolio, it is the first
+    // incumbent, so the search only has to prove it optimal or improve on it.
+    public KnapsackResult solveWithConstraints(
+            Investment[] investments,
+            double riskTolerance,
+            Map<String, Integer> minInvestments,
+            Map<String, Integer> maxInvestments,
+            List<Integer> warmStart) {
+        return solveWithConstraints(InstrumentTable.of(investments), riskTolerance,
+            minInvestments, maxInvestments, warmStart);
+    }
+    
+    public KnapsackResult solveWithConstraints(
+            InstrumentTable investments,
+            double riskTolerance,
+            Map<String, Integer> minInvestments,
+            Map<String, Integer> maxInvestments,
+            List<Integer> warmStart) {
+        return solveWithConstraints(investments, riskTolerance, minInvestments, maxInvestments,
+            warmStart, SolveLimits.NONE);
+    }
+    
+    // Anytime search: stops at the first limit reached and returns the best portfolio found so
+    // far. The incumbent is seeded with a greedy portfolio before the search starts, progress
+    // is reported through the listener's onIncumbent, and getLastStats() gives the proven
+    // upper bound, the gap and the termination reason.
+    public KnapsackResult solveWithConstraints(
+            Investment[] investments,
+            double riskTolerance,
+            Map<String, Integer> minInvestments,
+            Map<String, Integer> maxInvestments,
+            SolveLimits limits) {
+        return solveWithConstraints(InstrumentTable.of(investments), riskTolerance,
+            minInvestments, maxInvestments, new ArrayList<>(), limits);
+    }
+    
+    public KnapsackResult solveWithConstraints(
+            InstrumentTable investments,
+            double riskTolerance,
+            Map<String, Integer> minInvestments,
+            Map<String, Integer> maxInvestments,
+            List<Integer> warmStart,
+            SolveLimits limits) {
         
-        int n = investments.length;
+        int n = investments.size();
+        String solver = getClass().getSimpleName();
+        PhaseTimer timer = new PhaseTimer(listener, solver);
         
-        // Sort investments by value-to-weight ratio for better bound calculation
-        Investment[] sortedInvestments = Arrays.copyOf(investments, n);
-        Arrays.sort(sortedInvestments, (a, b) -> 
-            Double.compare(b.getExpectedReturn() / b.getRiskFactor(), 
-                          a.getExpectedReturn() / a.getRiskFactor()));
+        // Search investments by value-to-weight ratio for better bound calculation
+        int[] sortedToOriginal = investments.ratioOrder();
         
-        // Create mapping from sorted to original indices
-        int[] sortedToOriginal = new int[n];
+        // Copy the sorted risks and returns into primitive arrays
+        double[] risks = new double[n];
+        double[] returns = new double[n];
         for (int i = 0; i < n; i++) {
-            for (int j = 0; j < n; j++) {
-                if (sortedInvestments[i] == investments[j]) {
-                    sortedToOriginal[i] = j;
-                    break;
-                }
-            }
+            risks[i] = investments.risks[sortedToOriginal[i]];
+            returns[i] = investments.returns[sortedToOriginal[i]];
+        }
+        
+        // Intern the constrained sectors and precompute the per-position suffix counts
+        SectorConstraints constraints = new SectorConstraints(investments, sortedToOriginal,
+            minInvestments, maxInvestments);
+        if (!constraints.isReachable()) {
+            timer.end("setup");
+            lastStats = new SearchStats(0, 0, 0, 0, 0, 0, 0, new ArrayList<>(), timer.phases(),
+                SearchStats.Termination.COMPLETED);
+            listener.onSearchCompleted(solver, lastStats);
+            return new KnapsackResult(new ArrayList<>(), 0, 0);
         }
+        int sectorCount = constraints.sectorCount;
+        RatioBounds bounds = new RatioBounds(risks, returns, riskTolerance, constraints);
         
         // Initialize best solution
-        List<Integer> bestSolution = new ArrayList<>();
-        double bestValue = 0;
+        NodePool pool = nodePool(n, sectorCount);
+        long[] bestSelected = new long[pool.words];
+        double bestValue = bounds.greedyDive(bestSelected);
+        if (!warmStart.isEmpty()) {
+            long[] warmSelected = new long[pool.words];
+            double warmValue = warmStartValue(warmStart, sortedToOriginal, risks, returns,
+                riskTolerance, constraints, warmSelected);
+            if (warmValue > bestValue) {
+                bestValue = warmValue;
+                bestSelected = warmSelected;
+            }
+        }
+        List<SearchStats.Improvement> timeline = new ArrayList<>();
+        timeline.add(new SearchStats.Improvement(timer.elapsed(), 0, bestValue));
+        listener.onIncumbent(solver, bestValue, 0, timer.elapsed());
         
-        // Create priority queue for nodes
-        PriorityQueue<Node> pq = new PriorityQueue<>((a, b) -> 
-            Double.compare(b.bound, a.bound)); // Max heap by bound
+        // In hybrid mode the best-first queue may hold at most this many nodes
+        long openLimit = Math.min(maxOpenNodes, maxOpenBytes / pool.bytesPerNode());
+        boolean hybrid = strategy == SearchStrategy.HYBRID;
+        long nodesExpanded = 0;
+        long prunedByBound = 0;
+        long prunedBySector = 0;
+        long prunedByRisk = 0;
+        int peakOpenNodes = 0;
         
         // Create root node
-        Node root = new Node();
-        root.level = -1;
-        root.profit = 0;
-        root.weight = 0;
-        root.selected = new boolean[n];  // Initialize the array here
-        root.sectorCounts = new HashMap<>();
+        int root = pool.allocate();
+        pool.level[root] = -1;
+        pool.unmet[root] = constraints.initialUnmet;
         
         // Calculate bound for root node
-        root.bound = calculateBound(root, sortedInvestments, riskTolerance);
+        pool.bound[root] = calculateBound(pool, root, bounds);
         
-        pq.offer(root);
+        pool.push(root);
+        timer.end("setup");
         
-        while (!pq.isEmpty()) {
-            Node current = pq.poll();
-            
-            if (current.bound <= bestValue) {
-                continue; // Prune this branch
+        SearchStats.Termination termination = SearchStats.Termination.COMPLETED;
+        long iterations = 0;
+        while (pool.hasOpenNodes()) {
+            if (nodesExpanded >= limits.getMaxNodes()) {
+                termination = SearchStats.Termination.NODE_LIMIT;
+                break;
             }
+            if (++iterations % LIMIT_CHECK_INTERVAL == 0) {
+                SearchStats.Termination reached = limits.check(timer.elapsed());
+                if (reached != null) {
+                    termination = reached;
+                    break;
+                }
+            }
+            
+            // Finish the current depth-first dive before going back to the best-first queue
+            int current = pool.isDiving() ? pool.pop() : pool.poll();
             
             // Move to the next level
-            int nextLevel = current.level + 1;
-            if (nextLevel == n) {
-                continue; // Reached leaf node
+            int nextLevel = pool.level[current] + 1;
+            if (pool.bound[current] <= bestValue || nextLevel == n) {
+                if (nextLevel < n) {
+                    prunedByBound++;
+                }
+                pool.release(current);
+                continue; // Prune this branch or reached leaf node
             }
+            nodesExpanded++;
             
-            // Get the original index of the investment at this level
-            int originalIndex = sortedToOriginal[nextLevel];
-            Investment nextInv = sortedInvestments[nextLevel];
+            int sector = constraints.sectorOf[nextLevel];
+            int count = sector >= 0 ? pool.sectorCounts[current * sectorCount + sector] : 0;
             
             // Try including the current investment
-            if (current.weight + nextInv.getRiskFactor() <= riskTolerance) {
-                Node includeNode = new Node(current);
-                includeNode.level = nextLevel;
-                includeNode.weight = current.weight + nextInv.getRiskFactor();
-                includeNode.profit = current.profit + nextInv.getExpectedReturn();
-                includeNode.selected[nextLevel] = true;
+            int includeNode = -1;
+            if (pool.weight[current] + risks[nextLevel] > riskTolerance) {
+                prunedByRisk++;
+            } else if (!constraints.canInclude(nextLevel, count)) {
+                prunedBySector++;
+            } else {
+                includeNode = pool.copyOf(current);
+                pool.level[includeNode] = nextLevel;
+                pool.weight[includeNode] = pool.weight[current] + risks[nextLevel];
+                pool.profit[includeNode] = pool.profit[current] + returns[nextLevel];
+                pool.select(includeNode, nextLevel);
                 
                 // Update sector counts
-                String sector = nextInv.getSector();
-                includeNode.sectorCounts.put(sector, 
-                    includeNode.sectorCounts.getOrDefault(sector, 0) + 1);
-                
-                // Check if this solution satisfies max constraints
-                boolean satisfiesMaxConstraints = true;
-                for (Map.Entry<String, Integer> entry : maxInvestments.entrySet()) {
-                    String s = entry.getKey();
-                    int max = entry.getValue();
-                    if (includeNode.sectorCounts.getOrDefault(s, 0) > max) {
-                        satisfiesMaxConstraints = false;
-                        break;
+                if (sector >= 0) {
+                    pool.sectorCounts[includeNode * sectorCount + sector]++;
+                    if (constraints.meetsMinimum(nextLevel, count)) {
+                        pool.unmet[includeNode]--;
                     }
                 }
                 
-                if (satisfiesMaxConstraints) {
-                    includeNode.bound = calculateBound(includeNode, sortedInvestments, riskTolerance);
-                    
-                    // If this is a leaf node or better than current best, update best solution
-                    if (nextLevel == n-1 || includeNode.bound > bestValue) {
-                        // Check if min constraints can be satisfied
-                        boolean canSatisfyMinConstraints = true;
-                        for (Map.Entry<String, Integer> entry : minInvestments.entrySet()) {
-                            String s = entry.getKey();
-                            int min = entry.getValue();
-                            int current_count = includeNode.sectorCounts.getOrDefault(s, 0);
-                            int remaining = 0;
-                            
-                            // Count remaining investments in this sector
-                            for (int i = nextLevel + 1; i < n; i++) {
-                                if (sortedInvestments[i].getSector().equals(s)) {
-                                    remaining++;
-                                }
-                            }
-                            
-                            if (current_count + remaining < min) {
-                                canSatisfyMinConstraints = false;
-                                break;
-                            }
-                        }
-                        
-                        if (canSatisfyMinConstraints) {
-                            if (nextLevel == n-1) {
-                                // Check if min constraints are satisfied
-                                boolean satisfiesMinConstraints = true;
-                                for (Map.Entry<String, Integer> entry : minInvestments.entrySet()) {
-                                    String s = entry.getKey();
-                                    int min = entry.getValue();
-                                    if (includeNode.sectorCounts.getOrDefault(s, 0) < min) {
-                                        satisfiesMinConstraints = false;
-                                        break;
-                                    }
-                                }
-                                
-                                if (satisfiesMinConstraints && includeNode.profit > bestValue) {
-                                    bestValue = includeNode.profit;
-                                    bestSolution = convertToOriginalIndices(includeNode.selected, sortedToOriginal);
-                                }
-                            } else {
-                                pq.offer(includeNode);
-                            }
-                        }
+                // Every minimum is met, so this portfolio is feasible as it stands
+                if (pool.unmet[includeNode] == 0 && pool.profit[includeNode] > bestValue) {
+                    bestValue = pool.profit[includeNode];
+                    pool.copySelected(includeNode, bestSelected);
+                    timeline.add(new SearchStats.Improvement(timer.elapsed(), nodesExpanded, bestValue));
+                    listener.onIncumbent(solver, bestValue, nodesExpanded, timer.elapsed());
+                }
+                
+                pool.bound[includeNode] = calculateBound(pool, includeNode, bounds);
+                if (nextLevel == n-1 || pool.bound[includeNode] <= bestValue) {
+                    if (nextLevel < n-1) {
+                        prunedByBound++;
                     }
+                    pool.release(includeNode);
+                    includeNode = -1;
                 }
             }
             
             // Try excluding the current investment
-            Node excludeNode = new Node(current);
-            excludeNode.level = nextLevel;
-            excludeNode.bound = calculateBound(excludeNode, sortedInvestments, riskTolerance);
-            
-            // Check if min constraints can still be satisfied
-            boolean canSatisfyMinConstraints = true;
-            for (Map.Entry<String, Integer> entry : minInvestments.entrySet()) {
-                String s = entry.getKey();
-                int min = entry.getValue();
-                int current_count = excludeNode.sectorCounts.getOrDefault(s, 0);
-                int remaining = 0;
+            int excludeNode = -1;
+            if (!constraints.canExclude(nextLevel, count)) {
+                prunedBySector++;
+            } else {
+                excludeNode = pool.copyOf(current);
+                pool.level[excludeNode] = nextLevel;
+                pool.bound[excludeNode] = calculateBound(pool, excludeNode, bounds);
                 
-                // Count remaining investments in this sector
-                for (int i = nextLevel + 1; i < n; i++) {
-                    if (sortedInvestments[i].getSector().equals(s)) {
-                        remaining++;
+                if (nextLevel == n-1 || pool.bound[excludeNode] <= bestValue) {
+                    if (nextLevel < n-1) {
+                        prunedByBound++;
                     }
-                }
-                
-                if (current_count + remaining < min) {
-                    canSatisfyMinConstraints = false;
-                    break;
+                    pool.release(excludeNode);
+                    excludeNode = -1;
                 }
             }
             
-            if (canSatisfyMinConstraints && excludeNode.bound > bestValue) {
-                pq.offer(excludeNode);
+            pool.release(current);
+            
+            // Once the queue is over budget, children go on the dive stack instead,
+            // include child on top so the dive follows the include branch first
+            boolean dive = hybrid && (pool.isDiving() || pool.queueSize() >= openLimit);
+            if (excludeNode >= 0) {
+                if (dive) {
+                    pool.pushDive(excludeNode);
+                } else {
+                    pool.push(excludeNode);
+                }
+            }
+            if (includeNode >= 0) {
+                if (dive) {
+                    pool.pushDive(includeNode);
+                } else {
+                    pool.push(includeNode);
+                }
             }
+            peakOpenNodes = Math.max(peakOpenNodes, pool.openNodes());
         }
         
+        timer.end("search");
+        double upperBound = Math.max(bestValue, pool.maxOpenBound());
+        
+        List<Integer> bestSolution = convertToOriginalIndices(bestSelected, sortedToOriginal);
+        timer.end("result");
+        lastStats = new SearchStats(nodesExpanded, prunedByBound, prunedBySector, prunedByRisk,
+            peakOpenNodes, bestValue, upperBound, timeline, timer.phases(), termination);
+        listener.onSearchCompleted(solver, lastStats);
+        
         // If no solution found that satisfies all constraints
         if (bestSolution.isEmpty()) {
             return new KnapsackResult(new ArrayList<>(), 0, 0);
@@ -179,69 +336,285 @@ public class KnapsackBranchAndBound {
         double totalReturn = 0;
         double totalRisk = 0;
         for (int idx : bestSolution) {
-            totalReturn += investments[idx].getExpectedReturn();
-            totalRisk += investments[idx].getRiskFactor();
+            totalReturn += investments.returns[idx];
+            totalRisk += investments.risks[idx];
         }
         
         return new KnapsackResult(bestSolution, totalReturn, totalRisk);
     }
     
-    private double calculateBound(Node node, Investment[] investments, double capacity) {
-        if (node.weight >= capacity) {
-            return 0;
+    // Return of the warm-start portfolio with its decisions set in 'selected', or -1 if it
+    // repeats an index or breaks the tolerance or a sector limit
+    private double warmStartValue(List<Integer> warmStart, int[] sortedToOriginal, double[] risks,
+                                  double[] returns, double riskTolerance,
+                                  SectorConstraints constraints, long[] selected) {
+        int n = sortedToOriginal.length;
+        int[] originalToSorted = new int[n];
+        for (int i = 0; i < n; i++) {
+            originalToSorted[sortedToOriginal[i]] = i;
         }
-        
-        double bound = node.profit;
-        int level = node.level + 1;
-        double totalWeight = node.weight;
-        
-        // Add items completely until capacity is exceeded
-        while (level < investments.length && totalWeight + investments[level].getRiskFactor() <= capacity) {
-            if (!node.selected[level]) {
-                totalWeight += investments[level].getRiskFactor();
-                bound += investments[level].getExpectedReturn();
+        for (int idx : warmStart) {
+            if (idx < 0 || idx >= n) {
+                return -1;
+            }
+            int i = originalToSorted[idx];
+            if ((selected[i >>> 6] & (1L << i)) != 0) {
+                return -1;
             }
-            level++;
+            selected[i >>> 6] |= 1L << i;
         }
         
-        // Add the last item fractionally
-        if (level < investments.length) {
-            bound += (capacity - totalWeight) * 
-                    (investments[level].getExpectedReturn() / investments[level].getRiskFactor());
+        // Accumulate in sorted order, the same order the search adds risks in
+        double value = 0;
+        double weight = 0;
+        int[] counts = new int[constraints.sectorCount];
+        for (int i = 0; i < n; i++) {
+            if ((selected[i >>> 6] & (1L << i)) != 0) {
+                value += returns[i];
+                weight += risks[i];
+                if (constraints.sectorOf[i] >= 0) {
+                    counts[constraints.sectorOf[i]]++;
+                }
+            }
         }
-        
-        return bound;
+        if (weight > riskTolerance) {
+            return -1;
+        }
+        for (int s = 0; s < counts.length; s++) {
+            if (counts[s] < constraints.minCounts[s] || counts[s] > constraints.maxCounts[s]) {
+                return -1;
+            }
+        }
+        return value;
+    }
+    
+    private double calculateBound(NodePool pool, int node, RatioBounds bounds) {
+        if (boundType == BoundType.MARTELLO_TOTH) {
+            return bounds.martelloToth(pool.level[node], pool.profit[node], pool.weight[node],
+                pool.sectorCounts, node * pool.sectors);
+        }
+        return bounds.dantzig(pool.level[node], pool.profit[node], pool.weight[node]);
     }
     
-    private List<Integer> convertToOriginalIndices(boolean[] selected, int[] sortedToOriginal) {
+    private List<Integer> convertToOriginalIndices(long[] selected, int[] sortedToOriginal) {
         List<Integer> originalIndices = new ArrayList<>();
-        for (int i = 0; i < selected.length; i++) {
-            if (selected[i]) {
+        for (int i = 0; i < sortedToOriginal.length; i++) {
+            if ((selected[i >>> 6] & (1L << i)) != 0) {
                 originalIndices.add(sortedToOriginal[i]);
             }
         }
         return originalIndices;
     }
     
-    private static class Node {
-        int level;
-        double profit;
-        double weight;
-        double bound;
-        boolean[] selected;
-        Map<String, Integer> sectorCounts;
+    // A fresh node pool, or the kept one cleared for this solve when scratch reuse is on
+    private NodePool nodePool(int items, int sectors) {
+        if (!reuseScratch) {
+            return new NodePool(items, sectors);
+        }
+        if (scratchPool == null) {
+            scratchPool = new NodePool(items, sectors);
+        } else {
+            scratchPool.reset(items, sectors);
+        }
+        return scratchPool;
+    }
+    
+    // Struct-of-arrays storage for search nodes. A node is an int id into parallel primitive
+    // arrays: its decisions are a bitset of 'words' longs, its sector counts a slice of
+    // 'sectors' ints and 'unmet' the number of sectors still below their minimum. Released
+    // ids are recycled through a free list, so once the arrays have grown to the peak number
+    // of live nodes, expanding a node allocates nothing.
+    // The open set is a binary max-heap of node ids ordered by bound, plus a stack of node
+    // ids for depth-first dives.
+    private static class NodePool {
+        int words;
+        int sectors;
+        
+        int[] level;
+        int[] unmet;
+        double[] profit;
+        double[] weight;
+        double[] bound;
+        long[] selected;
+        int[] sectorCounts;
+        
+        private int capacity;
+        private int allocated;
+        private int[] free;
+        private int freeCount;
+        private int[] heap;
+        private int heapSize;
+        private int[] stack;
+        private int stackSize;
+        
+        NodePool(int items, int sectors) {
+            this.words = (items + 63) >>> 6;
+            this.sectors = sectors;
+            this.capacity = 64;
+            level = new int[capacity];
+            unmet = new int[capacity];
+            profit = new double[capacity];
+            weight = new double[capacity];
+            bound = new double[capacity];
+            selected = new long[capacity * words];
+            sectorCounts = new int[capacity * sectors];
+            free = new int[capacity];
+            heap = new int[capacity];
+            stack = new int[capacity];
+        }
+        
+        // Empties the pool for a new search, keeping the arrays; allocate() zeroes every node
+        // it hands out
+        void reset(int items, int sectors) {
+            this.words = (items + 63) >>> 6;
+            this.sectors = sectors;
+            allocated = 0;
+            freeCount = 0;
+            heapSize = 0;
+            stackSize = 0;
+            if (selected.length < capacity * words) {
+                selected = new long[capacity * words];
+            }
+            if (sectorCounts.length < capacity * sectors) {
+                sectorCounts = new int[capacity * sectors];
+            }
+        }
+        
+        // Storage used per node: level, unmet, free, heap and stack ints, three doubles,
+        // the decision bitset and the sector counts
+        long bytesPerNode() {
+            return 4L * 5 + 8L * 3 + 8L * words + 4L * sectors;
+        }
+        
+        // Returns a zeroed node
+        int allocate() {
+            int node;
+            if (freeCount > 0) {
+                node = free[--freeCount];
+            } else {
+                if (allocated == capacity) {
+                    grow();
+                }
+                node = allocated++;
+            }
+            level[node] = 0;
+            unmet[node] = 0;
+            profit[node] = 0;
+            weight[node] = 0;
+            bound[node] = 0;
+            Arrays.fill(selected, node * words, (node + 1) * words, 0L);
+            Arrays.fill(sectorCounts, node * sectors, (node + 1) * sectors, 0);
+            return node;
+        }
+        
+        int copyOf(int other) {
+            int node = allocate();
+            level[node] = level[other];
+            unmet[node] = unmet[other];
+            profit[node] = profit[other];
+            weight[node] = weight[other];
+            bound[node] = bound[other];
+            System.arraycopy(selected, other * words, selected, node * words, words);
+            System.arraycopy(sectorCounts, other * sectors, sectorCounts, node * sectors, sectors);
+            return node;
+        }
+        
+        void release(int node) {
+            free[freeCount++] = node;
+        }
+        
+        void select(int node, int item) {
+            selected[node * words + (item >>> 6)] |= 1L << item;
+        }
+        
+        void copySelected(int node, long[] target) {
+            System.arraycopy(selected, node * words, target, 0, words);
+        }
+        
+        boolean hasOpenNodes() {
+            return heapSize > 0 || stackSize > 0;
+        }
+        
+        boolean isDiving() {
+            return stackSize > 0;
+        }
+        
+        int queueSize() {
+            return heapSize;
+        }
+        
+        int openNodes() {
+            return heapSize + stackSize;
+        }
+        
+        void pushDive(int node) {
+            stack[stackSize++] = node;
+        }
+        
+        int pop() {
+            return stack[--stackSize];
+        }
+        
+        // Highest bound among the open nodes, or negative infinity when there are none
+        double maxOpenBound() {
+            double max = Double.NEGATIVE_INFINITY;
+            if (heapSize > 0) {
+                max = bound[heap[0]];
+            }
+            for (int i = 0; i < stackSize; i++) {
+                max = Math.max(max, bound[stack[i]]);
+            }
+            return max;
+        }
+        
+        void push(int node) {
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (bound[heap[parent]] >= bound[node]) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = node;
+        }
         
-        Node() {
-            sectorCounts = new HashMap<>();
+        // Removes and returns the open node with the highest bound
+        int poll() {
+            int top = heap[0];
+            int last = heap[--heapSize];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && bound[heap[child + 1]] > bound[heap[child]]) {
+                    child++;
+                }
+                if (bound[heap[child]] <= bound[last]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
         }
         
-        Node(Node other) {
-            this.level = other.level;
-            this.profit = other.profit;
-            this.weight = other.weight;
-            this.bound = other.bound;
-            this.selected = Arrays.copyOf(other.selected, other.selected.length);
-            this.sectorCounts = new HashMap<>(other.sectorCounts);
+        private void grow() {
+            capacity *= 2;
+            level = Arrays.copyOf(level, capacity);
+            unmet = Arrays.copyOf(unmet, capacity);
+            profit = Arrays.copyOf(profit, capacity);
+            weight = Arrays.copyOf(weight, capacity);
+            bound = Arrays.copyOf(bound, capacity);
+            selected = Arrays.copyOf(selected, capacity * words);
+            sectorCounts = Arrays.copyOf(sectorCounts, capacity * sectors);
+            free = Arrays.copyOf(free, capacity);
+            heap = Arrays.copyOf(heap, capacity);
+            stack = Arrays.copyOf(stack, capacity);
         }
     }
 }
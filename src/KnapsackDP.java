@@ -1,50 +1,248 @@
 import java.util.*;
 public class KnapsackDP {
     // Scale factor to convert doubles to integers for DP table
-    private static final int SCALE = 100;
+    static final int SCALE = 100;
+    
+    private SolverListener listener = SolverListener.NONE;
+    private DPStats lastStats;
+    // Table kept between solves when scratch reuse is on
+    private boolean reuseScratch;
+    private int[][] table;
+    
+    // Receives phase timings and the table statistics of every solve
+    public void setListener(SolverListener listener) {
+        this.listener = listener;
+    }
+    
+    // Statistics of the most recent solve, or null before the first one
+    public DPStats getLastStats() {
+        return lastStats;
+    }
+    
+    // Keeps the DP table between solve and solveBatch calls and refills it when the next call
+    // has the same capacity, instead of allocating and zeroing a new one. Meant for a solver
+    // owned by one thread, e.g. a service worker; the kept table is as large as the largest
+    // solve so far. Turning it off releases the table.
+    public void setScratchReuse(boolean reuse) {
+        this.reuseScratch = reuse;
+        if (!reuse) {
+            table = null;
+        }
+    }
     
     public KnapsackResult solve(Investment[] investments, double riskTolerance) {
-        int n = investments.length;//rows
+        return solve(InstrumentTable.of(investments), riskTolerance);
+    }
+    
+    public KnapsackResult solve(InstrumentTable investments, double riskTolerance) {
+        int n = investments.size();//rows
         int W = (int)(riskTolerance * SCALE);//columns
+        PhaseTimer timer = new PhaseTimer(listener, getClass().getSimpleName());
         
         // Create arrays of expected returns and risk factors
         int[] values = new int[n];
         int[] weights = new int[n];
-        
-        for (int i = 0; i < n; i++) {
-            values[i] = (int)(investments[i].getExpectedReturn() * SCALE);
-            weights[i] = (int)(investments[i].getRiskFactor() * SCALE);
-        }
+        scale(investments, values, weights);
+        timer.end("scale");
         
         // Create DP table
-        int[][] dp = new int[n + 1][W + 1];
+        int[][] dp = table(n, W);
         
         // Fill the DP table
         for (int i = 1; i <= n; i++) {
-            for (int w = 0; w <= W; w++) {
-                if (weights[i-1] <= w) {
-                    dp[i][w] = Math.max(values[i-1] + dp[i-1][w-weights[i-1]], dp[i-1][w]);//*
-                } else {
-                    dp[i][w] = dp[i-1][w];
-                }
-            }
+            fillRow(dp[i-1], dp[i], values[i-1], weights[i-1]);
+        }
+        timer.end("fill");
+        
+        KnapsackResult result = backtrack(dp, weights, W, investments);
+        timer.end("backtrack");
+        report((long) n * (W + 1), (long) (n + 1) * (W + 1) * 4, timer);
+        return result;
+    }
+    
+    // Solves the same investments for many risk tolerances with a single DP table. Column w
+    // only depends on columns <= w, so the table built for the largest tolerance already holds
+    // every smaller one; each result is backtracked from its own column and is identical to
+    // solve(investments, tolerance). Tolerances may come in any order; results follow it.
+    public KnapsackResult[] solveBatch(Investment[] investments, double[] riskTolerances) {
+        return solveBatch(InstrumentTable.of(investments), riskTolerances);
+    }
+    
+    public KnapsackResult[] solveBatch(InstrumentTable investments, double[] riskTolerances) {
+        int n = investments.size();
+        int[] capacities = new int[riskTolerances.length];
+        int W = 0;
+        for (int t = 0; t < riskTolerances.length; t++) {
+            capacities[t] = (int)(riskTolerances[t] * SCALE);
+            W = Math.max(W, capacities[t]);
         }
         
-        // Backtrack to find selected investments
+        PhaseTimer timer = new PhaseTimer(listener, getClass().getSimpleName());
+        int[] values = new int[n];
+        int[] weights = new int[n];
+        scale(investments, values, weights);
+        timer.end("scale");
+        
+        int[][] dp = table(n, W);
+        for (int i = 1; i <= n; i++) {
+            fillRow(dp[i-1], dp[i], values[i-1], weights[i-1]);
+        }
+        timer.end("fill");
+        
+        KnapsackResult[] results = new KnapsackResult[capacities.length];
+        backtrackAll(dp, weights, capacities, investments, results);
+        timer.end("backtrack");
+        report((long) n * (W + 1), (long) (n + 1) * (W + 1) * 4, timer);
+        return results;
+    }
+    
+    // Same result as solve(), but only O(W log n) table memory instead of O(n * W).
+    // Rows are recomputed on demand: to backtrack items [lo, hi) we only keep row lo,
+    // rebuild row mid from it, backtrack the upper half first and then the lower half
+    // with the capacity that is left. The decision for each item is the same test the
+    // full table uses, so the selected indices are identical.
+    public KnapsackResult solveMemoryBounded(Investment[] investments, double riskTolerance) {
+        return solveMemoryBounded(InstrumentTable.of(investments), riskTolerance);
+    }
+    
+    public KnapsackResult solveMemoryBounded(InstrumentTable investments, double riskTolerance) {
+        int n = investments.size();
+        int W = (int)(riskTolerance * SCALE);
+        PhaseTimer timer = new PhaseTimer(listener, getClass().getSimpleName());
+        
+        int[] values = new int[n];
+        int[] weights = new int[n];
+        scale(investments, values, weights);
+        timer.end("scale");
+        
         List<Integer> selectedIndices = new ArrayList<>();
-        int remainingCapacity = W;
-        double totalReturn = 0;
-        double totalRisk = 0;
+        if (n > 0) {
+            backtrack(values, weights, 0, n, new int[W + 1], W, selectedIndices);
+        }
+        KnapsackResult result = toResult(selectedIndices, investments);
+        timer.end("backtrack");
         
-        for (int i = n; i > 0; i--) {
+        // Every recursion level keeps its row lo, plus the two rows advance() rolls
+        int levels = 32 - Integer.numberOfLeadingZeros(Math.max(0, n - 1));
+        report(recomputedRows(0, n) * (W + 1), (long) (levels + 2) * (W + 1) * 4, timer);
+        return result;
+    }
+    
+    // Computes row i of the DP table from row i-1 for an item with the given value and weight
+    void fillRow(int[] prev, int[] next, int value, int weight) {
+        int W = prev.length - 1;
+        for (int w = 0; w <= W; w++) {
+            if (weight <= w) {
+                next[w] = Math.max(value + prev[w-weight], prev[w]);//*
+            } else {
+                next[w] = prev[w];
+            }
+        }
+    }
+    
+    // Backtracks one result per capacity from a filled table; results[t] is for capacities[t]
+    void backtrackAll(int[][] dp, int[] weights, int[] capacities, InstrumentTable investments,
+                      KnapsackResult[] results) {
+        for (int t = 0; t < capacities.length; t++) {
+            results[t] = backtrack(dp, weights, capacities[t], investments);
+        }
+    }
+    
+    // Backtrack to find selected investments, starting from column 'capacity' of the last row
+    KnapsackResult backtrack(int[][] dp, int[] weights, int capacity, InstrumentTable investments) {
+        List<Integer> selectedIndices = new ArrayList<>();
+        int remainingCapacity = capacity;
+        
+        for (int i = weights.length; i > 0; i--) {
             if (dp[i][remainingCapacity] != dp[i-1][remainingCapacity]) {
                 selectedIndices.add(i-1);
                 remainingCapacity -= weights[i-1];
-                totalReturn += investments[i-1].getExpectedReturn();
-                totalRisk += investments[i-1].getRiskFactor();
             }
         }
         
+        return toResult(selectedIndices, investments);
+    }
+    
+    // Backtracks items [lo, hi) given row lo of the DP table and the capacity left at row hi.
+    // Selected items are appended in descending index order; returns the capacity left at row lo.
+    private int backtrack(int[] values, int[] weights, int lo, int hi, int[] rowLo,
+                          int capacity, List<Integer> selectedIndices) {
+        if (hi - lo == 1) {
+            // dp[lo+1][c] != dp[lo][c] exactly when taking the item strictly improves row lo
+            if (weights[lo] <= capacity && values[lo] + rowLo[capacity - weights[lo]] > rowLo[capacity]) {
+                selectedIndices.add(lo);
+                return capacity - weights[lo];
+            }
+            return capacity;
+        }
+        
+        int mid = (lo + hi) >>> 1;
+        int[] rowMid = advance(rowLo, values, weights, lo, mid);
+        capacity = backtrack(values, weights, mid, hi, rowMid, capacity, selectedIndices);
+        rowMid = null; // release before descending into the lower half
+        return backtrack(values, weights, lo, mid, rowLo, capacity, selectedIndices);
+    }
+    
+    // Returns row 'to' of the DP table computed from row 'from', using two rolling rows
+    private int[] advance(int[] rowFrom, int[] values, int[] weights, int from, int to) {
+        int[] current = rowFrom.clone();
+        int[] next = new int[rowFrom.length];
+        for (int i = from; i < to; i++) {
+            fillRow(current, next, values[i], weights[i]);
+            int[] tmp = current;
+            current = next;
+            next = tmp;
+        }
+        return current;
+    }
+    
+    // A table with at least n + 1 rows of W + 1 columns. Row 0 is never written and fillRow
+    // overwrites every column of rows 1..n, so a kept table needs no clearing.
+    private int[][] table(int n, int W) {
+        if (!reuseScratch) {
+            return new int[n + 1][W + 1];
+        }
+        if (table == null || table[0].length != W + 1) {
+            table = new int[n + 1][W + 1];
+        } else if (table.length < n + 1) {
+            int kept = table.length;
+            table = Arrays.copyOf(table, n + 1);
+            for (int i = kept; i <= n; i++) {
+                table[i] = new int[W + 1];
+            }
+        }
+        return table;
+    }
+    
+    // Rows advance() fills while backtracking items [lo, hi)
+    private static long recomputedRows(int lo, int hi) {
+        if (hi - lo <= 1) {
+            return 0;
+        }
+        int mid = (lo + hi) >>> 1;
+        return (mid - lo) + recomputedRows(mid, hi) + recomputedRows(lo, mid);
+    }
+    
+    private void report(long cellsComputed, long tableBytes, PhaseTimer timer) {
+        lastStats = new DPStats(cellsComputed, tableBytes, timer.phases());
+        listener.onTableCompleted(getClass().getSimpleName(), lastStats);
+    }
+    
+    private void scale(InstrumentTable investments, int[] values, int[] weights) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (int)(investments.returns[i] * SCALE);
+            weights[i] = (int)(investments.risks[i] * SCALE);
+        }
+    }
+    
+    // Expects indices in backtracking (descending) order so the totals add up in the same order
+    private KnapsackResult toResult(List<Integer> selectedIndices, InstrumentTable investments) {
+        double totalReturn = 0;
+        double totalRisk = 0;
+        for (int idx : selectedIndices) {
+            totalReturn += investments.returns[idx];
+            totalRisk += investments.risks[idx];
+        }
         Collections.reverse(selectedIndices);
         return new KnapsackResult(selectedIndices, totalReturn, totalRisk);
     }
@@ -0,0 +1,167 @@
+import java.util.*;
+
+// Shrinks a portfolio problem before it is handed to a solver, without changing its optimum.
+// Investments are sorted by return-to-risk ratio as in KnapsackGreedy and KnapsackBranchAndBound.
+//  1. Reduced-cost fixing: with U the Dantzig bound, b the critical item and LB the greedy
+//     portfolio's return, flipping an item j away from its LP value costs at least
+//     |p_j - w_j * p_b / w_b|. If U minus that cost is below LB, every optimal portfolio keeps
+//     j at its LP value, so j is fixed in (before b) or out (after b).
+//  2. Dominance: j is dropped when at least k other undecided investments of its sector have
+//     no more risk and no less return, where k is the most investments that can be taken from
+//     that sector (capacity and sector maximum). An optimal portfolio holding j then always
+//     misses one of them, and swapping j for it is feasible and no worse.
+// What is left is the core around the critical item.
+public class KnapsackPreprocessor {
+    // Relative margin on the fixing test so that rounding never fixes an item on an exact tie
+    private static final double TOLERANCE = 1e-9;
+    
+    public ReducedProblem reduce(Investment[] investments, double riskTolerance) {
+        return reduce(investments, riskTolerance, new HashMap<>(), new HashMap<>());
+    }
+    
+    public ReducedProblem reduce(
+            Investment[] investments,
+            double riskTolerance,
+            Map<String, Integer> minInvestments,
+            Map<String, Integer> maxInvestments) {
+        
+        int n = investments.length;
+        InstrumentTable table = InstrumentTable.of(investments);
+        
+        // Investment indices by value-to-weight ratio
+        int[] order = table.ratioOrder();
+        double[] risks = new double[n];
+        double[] returns = new double[n];
+        int[] sectors = new int[n];
+        for (int i = 0; i < n; i++) {
+            risks[i] = table.risks[order[i]];
+            returns[i] = table.returns[order[i]];
+            sectors[i] = table.sectorIds[order[i]];
+        }
+        
+        // 0 = undecided, 1 = fixed in, -1 = fixed out (indexed by sorted position)
+        int[] fixed = new int[n];
+        SectorConstraints constraints = new SectorConstraints(table, order, minInvestments, maxInvestments);
+        if (constraints.isReachable()) {
+            fixByReducedCost(risks, returns, riskTolerance, constraints, fixed);
+            
+            double residual = riskTolerance;
+            int[] fixedPerSector = new int[constraints.sectorCount];
+            for (int i = 0; i < n; i++) {
+                if (fixed[i] == 1) {
+                    residual -= risks[i];
+                    if (constraints.sectorOf[i] >= 0) {
+                        fixedPerSector[constraints.sectorOf[i]]++;
+                    }
+                }
+            }
+            dropDominated(risks, returns, sectors, residual, constraints, fixedPerSector, fixed);
+        }
+        
+        List<Integer> fixedIndices = new ArrayList<>();
+        List<Integer> core = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (fixed[i] == 1) {
+                fixedIndices.add(order[i]);
+            } else if (fixed[i] == 0) {
+                core.add(order[i]);
+            }
+        }
+        Collections.sort(fixedIndices);
+        Collections.sort(core);
+        
+        int[] coreToOriginal = new int[core.size()];
+        for (int i = 0; i < coreToOriginal.length; i++) {
+            coreToOriginal[i] = core.get(i);
+        }
+        return new ReducedProblem(investments, fixedIndices, coreToOriginal, riskTolerance,
+            minInvestments, maxInvestments);
+    }
+    
+    private void fixByReducedCost(double[] risks, double[] returns, double capacity,
+                                  SectorConstraints constraints, int[] fixed) {
+        int n = risks.length;
+        RatioBounds bounds = new RatioBounds(risks, returns, capacity, constraints);
+        double lowerBound = bounds.greedyDive(new long[(n + 63) >>> 6]);
+        double upperBound = bounds.dantzig(-1, 0, 0);
+        int critical = bounds.criticalItem(0, capacity);
+        double criticalRatio = critical < n ? returns[critical] / risks[critical] : 0;
+        double threshold = lowerBound - TOLERANCE * Math.max(1, Math.abs(lowerBound));
+        
+        for (int j = 0; j < n; j++) {
+            if (risks[j] > capacity) {
+                fixed[j] = -1;
+                continue;
+            }
+            if (j == critical) {
+                continue;
+            }
+            double reducedCost = Math.abs(returns[j] - risks[j] * criticalRatio);
+            if (upperBound - reducedCost < threshold) {
+                fixed[j] = j < critical ? 1 : -1;
+            }
+        }
+    }
+    
+    // Risks, returns and table sector ids are indexed by sorted position
+    private void dropDominated(double[] risks, double[] returns, int[] sectors, double capacity,
+                               SectorConstraints constraints, int[] fixedPerSector, int[] fixed) {
+        int n = risks.length;
+        
+        // Most investments any portfolio can hold: the lightest undecided ones that fit together
+        List<Double> freeRisks = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (fixed[i] == 0) {
+                freeRisks.add(risks[i]);
+            }
+        }
+        Collections.sort(freeRisks);
+        int maxCount = 0;
+        double used = 0;
+        for (double risk : freeRisks) {
+            if (used + risk > capacity) {
+                break;
+            }
+            used += risk;
+            maxCount++;
+        }
+        
+        // Group the undecided investments by sector, lightest first, then highest return first
+        Map<Integer, List<Integer>> bySector = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            if (fixed[i] == 0) {
+                bySector.computeIfAbsent(sectors[i], s -> new ArrayList<>()).add(i);
+            }
+        }
+        for (List<Integer> items : bySector.values()) {
+            items.sort((a, b) -> {
+                int c = Double.compare(risks[a], risks[b]);
+                if (c == 0) {
+                    c = Double.compare(returns[b], returns[a]);
+                }
+                return c != 0 ? c : Integer.compare(a, b);
+            });
+            
+            int s = constraints.sectorOf[items.get(0)];
+            int limit = maxCount;
+            if (s >= 0 && constraints.maxCounts[s] != Integer.MAX_VALUE) {
+                limit = Math.min(limit, Math.max(0, constraints.maxCounts[s] - fixedPerSector[s]));
+            }
+            
+            // Every investment seen earlier has no more risk; it dominates the current one when
+            // its return is at least as high. Keep the 'limit' highest returns seen so far.
+            PriorityQueue<Double> topReturns = new PriorityQueue<>();
+            for (int i : items) {
+                double r = returns[i];
+                if (topReturns.size() == limit && (limit == 0 || topReturns.peek() >= r)) {
+                    fixed[i] = -1;
+                    continue;
+                }
+                topReturns.offer(r);
+                if (topReturns.size() > limit) {
+                    topReturns.poll();
+                }
+            }
+        }
+    }
+}
@@ -55,6 +55,7 @@ public class Main {
             investments, riskTolerance, minInvestments, maxInvestments);
         endTime = System.nanoTime();
         printResult(bnbResult, investments, endTime - startTime);
+        System.out.println(bnbSolver.getLastStats());
         
         // Compare all approaches
         System.out.println("\n=== Comparison of Approaches ===");
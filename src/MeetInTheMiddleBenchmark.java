@@ -0,0 +1,85 @@
+import java.util.*;
+
+// Wall-clock comparison of MeetInTheMiddleSolver with branch and bound on medium-sized
+// instances with six-decimal risks, where KnapsackDP's cent table no longer sees the real
+// problem. Two kinds of instances:
+//  - the InstanceGenerator families with 25% capacity and their sector constraints
+//  - even-odd subset sums: return equals risk, every risk is an even number of millionths and
+//    the tolerance an odd one, so no portfolio fills the tolerance exactly. All ratios are
+//    equal, the bound never drops below the tolerance and branch and bound cannot prove
+//    optimality; it runs until its time limit and reports the gap it has left.
+// Branch and bound runs in anytime mode with a time limit, so a case that would take minutes
+// or more shows up as TIME_LIMIT. The meet-in-the-middle time is the best of a few runs.
+//
+// Usage: java -cp bin MeetInTheMiddleBenchmark [--quick]
+public class MeetInTheMiddleBenchmark {
+    private static final long SEED = 42;
+    private static final int DECIMALS = 6;
+    private static final int[] FAMILY_SIZES = {30, 40, 50, 60};
+    private static final int[] SUBSET_SUM_SIZES = {30, 36, 40, 44};
+    private static final double CAPACITY_FRACTION = 0.25;
+    private static final double SUBSET_SUM_FRACTION = 0.5;
+    private static final long MAX_BNB_OPEN_NODES = 1_000_000;
+    
+    public static void main(String[] args) {
+        boolean quick = args.length > 0 && args[0].equals("--quick");
+        long timeLimitMillis = quick ? 5_000 : 120_000;
+        int runs = quick ? 1 : 3;
+        
+        System.out.printf("%-36s %14s %14s %12s %14s %8s%n",
+            "Case", "MITM ms", "B&B ms", "B&B stop", "B&B gap", "Same");
+        for (InstanceGenerator.Family family : InstanceGenerator.Family.values()) {
+            for (int n : FAMILY_SIZES) {
+                Investment[] investments = new InstanceGenerator(SEED).generate(family, n, DECIMALS);
+                run(String.format("%s n=%d", family, n), investments,
+                    InstanceGenerator.tolerance(investments, CAPACITY_FRACTION),
+                    InstanceGenerator.minInvestments(investments),
+                    InstanceGenerator.maxInvestments(investments), timeLimitMillis, runs);
+            }
+        }
+        for (int n : SUBSET_SUM_SIZES) {
+            Investment[] investments = evenOddSubsetSum(n);
+            double tolerance = InstanceGenerator.tolerance(investments, SUBSET_SUM_FRACTION) + 1e-6;
+            run(String.format("EVEN_ODD_SUBSET_SUM n=%d", n), investments, tolerance,
+                new HashMap<>(), new HashMap<>(), timeLimitMillis, runs);
+        }
+    }
+    
+    private static void run(String name, Investment[] investments, double tolerance,
+                            Map<String, Integer> minInvestments, Map<String, Integer> maxInvestments,
+                            long timeLimitMillis, int runs) {
+        MeetInTheMiddleSolver solver = new MeetInTheMiddleSolver();
+        KnapsackResult exact = null;
+        long bestNanos = Long.MAX_VALUE;
+        for (int r = 0; r < runs; r++) {
+            long start = System.nanoTime();
+            exact = solver.solveWithConstraints(investments, tolerance, minInvestments, maxInvestments);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+        solver.shutdown();
+        
+        KnapsackBranchAndBound bnb = new KnapsackBranchAndBound(
+            KnapsackBranchAndBound.SearchStrategy.HYBRID, MAX_BNB_OPEN_NODES);
+        long start = System.nanoTime();
+        KnapsackResult bounded = bnb.solveWithConstraints(investments, tolerance,
+            minInvestments, maxInvestments, new SolveLimits(timeLimitMillis, Long.MAX_VALUE));
+        long bnbNanos = System.nanoTime() - start;
+        SearchStats stats = bnb.getLastStats();
+        
+        System.out.printf("%-36s %14.1f %14.1f %12s %14.6f %8s%n", name, bestNanos / 1e6,
+            bnbNanos / 1e6, stats.getTermination(), stats.getOptimalityGap(),
+            Math.abs(exact.getTotalReturn() - bounded.getTotalReturn()) < 1e-9 ? "yes" : "no");
+    }
+    
+    // Return = risk, risks rounded to an even number of millionths
+    private static Investment[] evenOddSubsetSum(int n) {
+        Investment[] generated = new InstanceGenerator(SEED)
+            .generate(InstanceGenerator.Family.UNCORRELATED, n, DECIMALS);
+        Investment[] investments = new Investment[n];
+        for (int i = 0; i < n; i++) {
+            double risk = Math.round(generated[i].getRiskFactor() * 500_000) / 500_000.0;
+            investments[i] = new Investment(generated[i].getName(), risk, risk, generated[i].getSector());
+        }
+        return investments;
+    }
+}
@@ -0,0 +1,556 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+// Exact solver for medium-sized universes (roughly 30 to 60 investments) whose risks have too
+// many decimals for a DP table and too little structure for branch and bound to prune well.
+// The investments are split into two halves (Horowitz-Sahni). Each half is enumerated into
+// Pareto frontiers of (risk, return) states, one frontier per sector signature: the half's
+// count of investments in every binding constrained sector. A state that is heavier than
+// another state with the same signature but returns no more is dropped as soon as it is
+// created, so a half usually keeps far fewer than 2^(n/2) states. The two halves are then
+// joined: for every pair of signatures whose counts add up to within the sector limits, one
+// two-pointer pass over the two frontiers finds the best combination within the tolerance.
+//
+// Risks are used exactly (ExactWeights); returns are summed as doubles. Both halves are built
+// at the same time, the frontier merges of a half and the joins run as fork-join tasks, and
+// the result does not depend on the thread count.
+public class MeetInTheMiddleSolver {
+    // Each half's selections are kept as bitmasks in a long; the enumeration is 2^(n/2)
+    // states per half in the worst case, so n is capped well below that anyway
+    public static final int MAX_INVESTMENTS = 64;
+    // Frontier merges and joins smaller than this many states are not split further
+    private static final int MIN_TASK_STATES = 1 << 12;
+    // Weight, value and mask of a frontier state
+    private static final long STATE_BYTES = 24;
+    
+    // Created once and reused by every solve of this instance
+    private final ForkJoinPool pool;
+    private SolverListener listener = SolverListener.NONE;
+    private DPStats lastStats;
+    
+    public MeetInTheMiddleSolver() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    public MeetInTheMiddleSolver(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.pool = new ForkJoinPool(parallelism);
+    }
+    
+    // Receives phase timings and the frontier statistics of every solve
+    public void setListener(SolverListener listener) {
+        this.listener = listener;
+    }
+    
+    // Statistics of the most recent solve, or null before the first one: the states built
+    // over all frontier merges of both halves and the bytes of the two finished halves
+    public DPStats getLastStats() {
+        return lastStats;
+    }
+    
+    // Shuts down the worker threads; the solver cannot be used afterwards
+    public void shutdown() {
+        pool.shutdown();
+    }
+    
+    public KnapsackResult solve(Investment[] investments, double riskTolerance) {
+        return solve(InstrumentTable.of(investments), riskTolerance);
+    }
+    
+    public KnapsackResult solve(InstrumentTable investments, double riskTolerance) {
+        return solveWithConstraints(investments, riskTolerance, new HashMap<>(), new HashMap<>());
+    }
+    
+    public KnapsackResult solveWithConstraints(
+            Investment[] investments,
+            double riskTolerance,
+            Map<String, Integer> minInvestments,
+            Map<String, Integer> maxInvestments) {
+        return solveWithConstraints(InstrumentTable.of(investments), riskTolerance,
+            minInvestments, maxInvestments);
+    }
+    
+    public KnapsackResult solveWithConstraints(
+            InstrumentTable investments,
+            double riskTolerance,
+            Map<String, Integer> minInvestments,
+            Map<String, Integer> maxInvestments) {
+        
+        int n = investments.size();
+        if (n > MAX_INVESTMENTS) {
+            throw new IllegalArgumentException("Meet in the middle supports at most "
+                + MAX_INVESTMENTS + " investments, got " + n);
+        }
+        PhaseTimer timer = new PhaseTimer(listener, getClass().getSimpleName());
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        SectorConstraints constraints = new SectorConstraints(investments, order,
+            minInvestments, maxInvestments);
+        ExactWeights exact = new ExactWeights(investments, riskTolerance);
+        if (!constraints.isReachable() || exact.capacity < 0) {
+            timer.end("setup");
+            report(0, 0, timer);
+            return new KnapsackResult(new ArrayList<>(), 0, 0);
+        }
+        
+        Search search = new Search(exact.weights, investments.returns, exact.capacity, constraints);
+        int split = n / 2;
+        timer.end("setup");
+        Half[] halves = pool.invoke(search.new HalvesTask(split));
+        Half lower = halves[0];
+        Half upper = halves[1];
+        timer.end("build");
+        Best best = pool.invoke(search.new JoinTask(lower, upper, 0, lower.keys.length));
+        timer.end("join");
+        
+        List<Integer> bestSolution = new ArrayList<>();
+        if (best != null) {
+            for (int i = 0; i < n; i++) {
+                long mask = i < split ? best.lowerMask : best.upperMask;
+                if ((mask & (1L << (i < split ? i : i - split))) != 0) {
+                    bestSolution.add(i);
+                }
+            }
+        }
+        
+        // Calculate total return and risk for the best solution
+        double totalReturn = 0;
+        double totalRisk = 0;
+        for (int idx : bestSolution) {
+            totalReturn += investments.returns[idx];
+            totalRisk += investments.risks[idx];
+        }
+        timer.end("result");
+        report(lower.statesBuilt + upper.statesBuilt, STATE_BYTES * (lower.states() + upper.states()), timer);
+        
+        return new KnapsackResult(bestSolution, totalReturn, totalRisk);
+    }
+    
+    private void report(long statesBuilt, long bytes, PhaseTimer timer) {
+        lastStats = new DPStats(statesBuilt, bytes, timer.phases());
+        listener.onTableCompleted(getClass().getSimpleName(), lastStats);
+    }
+    
+    // States of one signature, by increasing weight and strictly increasing value
+    private static final class Frontier {
+        static final Frontier EMPTY_SELECTION = new Frontier(new long[] {0}, new double[] {0}, new long[] {0});
+        
+        final long[] weights;
+        final double[] values;
+        // Selected investments of the half, bit i for the half's i-th investment
+        final long[] masks;
+        
+        Frontier(long[] weights, double[] values, long[] masks) {
+            this.weights = weights;
+            this.values = values;
+            this.masks = masks;
+        }
+        
+        int size() {
+            return weights.length;
+        }
+        
+        double maxValue() {
+            return values[values.length - 1];
+        }
+        
+        // Pareto merge of 'a' with 'b' shifted by one more investment (w, v, bit); shifted
+        // states over the capacity are dropped. Either frontier may be null.
+        static Frontier merge(Frontier a, Frontier b, long w, double v, long bit, long capacity) {
+            int sizeA = a == null ? 0 : a.size();
+            int sizeB = b == null ? 0 : b.size();
+            long[] weights = new long[sizeA + sizeB];
+            double[] values = new double[sizeA + sizeB];
+            long[] masks = new long[sizeA + sizeB];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < sizeA || (j < sizeB && b.weights[j] + w <= capacity)) {
+                boolean fromShifted = j < sizeB && b.weights[j] + w <= capacity
+                    && (i == sizeA || b.weights[j] + w < a.weights[i]
+                        || (b.weights[j] + w == a.weights[i] && b.values[j] + v > a.values[i]));
+                long stateW;
+                double stateV;
+                long stateM;
+                if (fromShifted) {
+                    stateW = b.weights[j] + w;
+                    stateV = b.values[j] + v;
+                    stateM = b.masks[j] | bit;
+                    j++;
+                } else {
+                    stateW = a.weights[i];
+                    stateV = a.values[i];
+                    stateM = a.masks[i];
+                    i++;
+                }
+                // Keep the state only if it beats every lighter state already kept
+                if (count == 0 || stateV > values[count - 1]) {
+                    if (count > 0 && weights[count - 1] == stateW) {
+                        count--;
+                    }
+                    weights[count] = stateW;
+                    values[count] = stateV;
+                    masks[count] = stateM;
+                    count++;
+                }
+            }
+            return new Frontier(Arrays.copyOf(weights, count), Arrays.copyOf(values, count),
+                Arrays.copyOf(masks, count));
+        }
+    }
+    
+    // All frontiers of one half, by ascending signature key
+    private static final class Half {
+        final long[] keys;
+        final Frontier[] frontiers;
+        // Sector counts behind each key
+        final int[][] counts;
+        // States kept by every merge that built the half
+        final long statesBuilt;
+        
+        Half(long[] keys, Frontier[] frontiers, int[][] counts, long statesBuilt) {
+            this.keys = keys;
+            this.frontiers = frontiers;
+            this.counts = counts;
+            this.statesBuilt = statesBuilt;
+        }
+        
+        long states() {
+            long states = 0;
+            for (Frontier frontier : frontiers) {
+                states += frontier.size();
+            }
+            return states;
+        }
+    }
+    
+    // Best combination found; ties go to the first in join order
+    private static final class Best {
+        final double value;
+        final long lowerMask;
+        final long upperMask;
+        
+        Best(double value, long lowerMask, long upperMask) {
+            this.value = value;
+            this.lowerMask = lowerMask;
+            this.upperMask = upperMask;
+        }
+        
+        static Best better(Best first, Best second) {
+            if (first == null) {
+                return second;
+            }
+            return second != null && second.value > first.value ? second : first;
+        }
+    }
+    
+    // Inputs shared by the tasks of one solve
+    private static final class Search {
+        final long[] weights;
+        final double[] values;
+        final long capacity;
+        final int[] sectorOf;
+        final int[] minCounts;
+        final int[] maxCounts;
+        // Signatures count a sector up to its cap. A binding maximum is the cap and taking
+        // more is not allowed; otherwise the cap is the minimum and counts saturate there,
+        // since any count at or above the minimum is as good as another.
+        final int[] caps;
+        final boolean[] saturating;
+        
+        Search(long[] weights, double[] values, long capacity, SectorConstraints constraints) {
+            this.weights = weights;
+            this.values = values;
+            this.capacity = capacity;
+            this.sectorOf = constraints.sectorOf;
+            this.minCounts = constraints.minCounts;
+            this.maxCounts = constraints.maxCounts;
+            int sectors = constraints.sectorCount;
+            int[] totals = new int[sectors];
+            for (int s : sectorOf) {
+                if (s >= 0) {
+                    totals[s]++;
+                }
+            }
+            caps = new int[sectors];
+            saturating = new boolean[sectors];
+            for (int s = 0; s < sectors; s++) {
+                saturating[s] = maxCounts[s] >= totals[s];
+                caps[s] = saturating[s] ? minCounts[s] : maxCounts[s];
+            }
+        }
+        
+        // Builds both halves in parallel, lower half first
+        final class HalvesTask extends RecursiveTask<Half[]> {
+            private static final long serialVersionUID = 1L;
+            final int split;
+            
+            HalvesTask(int split) {
+                this.split = split;
+            }
+            
+            @Override
+            protected Half[] compute() {
+                BuildTask lowerTask = new BuildTask(0, split);
+                lowerTask.fork();
+                Half upper = new BuildTask(split, weights.length).compute();
+                return new Half[] {lowerTask.join(), upper};
+            }
+        }
+        
+        // Enumerates investments [from, to) into one frontier per signature
+        final class BuildTask extends RecursiveTask<Half> {
+            private static final long serialVersionUID = 1L;
+            final int from;
+            final int to;
+            
+            BuildTask(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+            
+            @Override
+            protected Half compute() {
+                // Mixed-radix signature keys: digit s is the (capped) count of sector s
+                int sectors = caps.length;
+                int[] inHalf = new int[sectors];
+                for (int i = from; i < to; i++) {
+                    if (sectorOf[i] >= 0) {
+                        inHalf[sectorOf[i]]++;
+                    }
+                }
+                int[] radix = new int[sectors];
+                long[] stride = new long[sectors];
+                long product = 1;
+                for (int s = 0; s < sectors; s++) {
+                    radix[s] = Math.min(inHalf[s], caps[s]) + 1;
+                    stride[s] = product;
+                    product *= radix[s];
+                }
+                
+                long[] keys = {0};
+                Frontier[] frontiers = {Frontier.EMPTY_SELECTION};
+                long statesBuilt = 1;
+                for (int i = from; i < to; i++) {
+                    int s = sectorOf[i];
+                    // Key of each frontier once investment i is taken, or -1 if it cannot be
+                    long[] shifted = new long[keys.length];
+                    for (int g = 0; g < keys.length; g++) {
+                        if (s < 0) {
+                            shifted[g] = keys[g];
+                        } else if ((keys[g] / stride[s]) % radix[s] < radix[s] - 1) {
+                            shifted[g] = keys[g] + stride[s];
+                        } else {
+                            shifted[g] = saturating[s] ? keys[g] : -1;
+                        }
+                    }
+                    
+                    // New keys and, for each, its frontier without i and up to two with i
+                    // (two when a saturated count stays on the same key)
+                    long[] next = union(keys, shifted);
+                    int[] without = new int[next.length];
+                    int[] with = new int[next.length];
+                    int[] withSaturated = new int[next.length];
+                    Arrays.fill(without, -1);
+                    Arrays.fill(with, -1);
+                    Arrays.fill(withSaturated, -1);
+                    for (int g = 0; g < keys.length; g++) {
+                        without[Arrays.binarySearch(next, keys[g])] = g;
+                        if (shifted[g] >= 0) {
+                            int k = Arrays.binarySearch(next, shifted[g]);
+                            if (with[k] < 0) {
+                                with[k] = g;
+                            } else {
+                                withSaturated[k] = g;
+                            }
+                        }
+                    }
+                    
+                    Frontier[] merged = new Frontier[next.length];
+                    new MergeTask(frontiers, without, with, withSaturated, i, from, merged, 0, next.length)
+                        .compute();
+                    
+                    // Drop signatures whose states all went over the capacity
+                    int count = 0;
+                    for (int k = 0; k < next.length; k++) {
+                        if (merged[k].size() > 0) {
+                            statesBuilt += merged[k].size();
+                            next[count] = next[k];
+                            merged[count] = merged[k];
+                            count++;
+                        }
+                    }
+                    keys = Arrays.copyOf(next, count);
+                    frontiers = Arrays.copyOf(merged, count);
+                }
+                
+                int[][] counts = new int[keys.length][sectors];
+                for (int g = 0; g < keys.length; g++) {
+                    for (int s = 0; s < sectors; s++) {
+                        counts[g][s] = (int) ((keys[g] / stride[s]) % radix[s]);
+                    }
+                }
+                return new Half(keys, frontiers, counts, statesBuilt);
+            }
+        }
+        
+        // Builds the new frontiers [lo, hi) after investment 'item'
+        final class MergeTask extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+            final Frontier[] frontiers;
+            final int[] without;
+            final int[] with;
+            final int[] withSaturated;
+            final int item;
+            final int from;
+            final Frontier[] merged;
+            final int lo;
+            final int hi;
+            
+            MergeTask(Frontier[] frontiers, int[] without, int[] with, int[] withSaturated,
+                      int item, int from, Frontier[] merged, int lo, int hi) {
+                this.frontiers = frontiers;
+                this.without = without;
+                this.with = with;
+                this.withSaturated = withSaturated;
+                this.item = item;
+                this.from = from;
+                this.merged = merged;
+                this.lo = lo;
+                this.hi = hi;
+            }
+            
+            @Override
+            protected void compute() {
+                if (hi - lo > 1 && states() > MIN_TASK_STATES) {
+                    int mid = (lo + hi) >>> 1;
+                    invokeAll(new MergeTask(frontiers, without, with, withSaturated, item, from, merged, lo, mid),
+                              new MergeTask(frontiers, without, with, withSaturated, item, from, merged, mid, hi));
+                    return;
+                }
+                long w = weights[item];
+                double v = values[item];
+                long bit = 1L << (item - from);
+                for (int k = lo; k < hi; k++) {
+                    Frontier result = Frontier.merge(source(without[k]), source(with[k]), w, v, bit, capacity);
+                    if (withSaturated[k] >= 0) {
+                        result = Frontier.merge(result, frontiers[withSaturated[k]], w, v, bit, capacity);
+                    }
+                    merged[k] = result;
+                }
+            }
+            
+            private Frontier source(int g) {
+                return g < 0 ? null : frontiers[g];
+            }
+            
+            private long states() {
+                long states = 0;
+                for (int k = lo; k < hi; k++) {
+                    states += without[k] < 0 ? 0 : frontiers[without[k]].size();
+                    states += with[k] < 0 ? 0 : frontiers[with[k]].size();
+                    states += withSaturated[k] < 0 ? 0 : frontiers[withSaturated[k]].size();
+                }
+                return states;
+            }
+        }
+        
+        // Best combination of a lower-half signature in [lo, hi) with any upper-half one
+        final class JoinTask extends RecursiveTask<Best> {
+            private static final long serialVersionUID = 1L;
+            final Half lower;
+            final Half upper;
+            final int lo;
+            final int hi;
+            
+            JoinTask(Half lower, Half upper, int lo, int hi) {
+                this.lower = lower;
+                this.upper = upper;
+                this.lo = lo;
+                this.hi = hi;
+            }
+            
+            @Override
+            protected Best compute() {
+                if (hi - lo > 1 && states() > MIN_TASK_STATES) {
+                    int mid = (lo + hi) >>> 1;
+                    JoinTask left = new JoinTask(lower, upper, lo, mid);
+                    left.fork();
+                    Best right = new JoinTask(lower, upper, mid, hi).compute();
+                    return Best.better(left.join(), right);
+                }
+                Best best = null;
+                for (int a = lo; a < hi; a++) {
+                    Frontier fa = lower.frontiers[a];
+                    for (int b = 0; b < upper.keys.length; b++) {
+                        Frontier fb = upper.frontiers[b];
+                        if (!compatible(lower.counts[a], upper.counts[b])
+                                || (best != null && fa.maxValue() + fb.maxValue() <= best.value)) {
+                            continue;
+                        }
+                        // Lighter lower states leave room for heavier, better upper states
+                        int j = fb.size() - 1;
+                        for (int i = 0; i < fa.size(); i++) {
+                            long room = capacity - fa.weights[i];
+                            while (j >= 0 && fb.weights[j] > room) {
+                                j--;
+                            }
+                            if (j < 0) {
+                                break;
+                            }
+                            double value = fa.values[i] + fb.values[j];
+                            if (best == null || value > best.value) {
+                                best = new Best(value, fa.masks[i], fb.masks[j]);
+                            }
+                        }
+                    }
+                }
+                return best;
+            }
+            
+            private boolean compatible(int[] lowerCounts, int[] upperCounts) {
+                for (int s = 0; s < caps.length; s++) {
+                    int count = lowerCounts[s] + upperCounts[s];
+                    if (count < minCounts[s] || (!saturating[s] && count > maxCounts[s])) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            
+            private long states() {
+                long states = 0;
+                for (int a = lo; a < hi; a++) {
+                    states += lower.frontiers[a].size();
+                }
+                return states * upper.keys.length;
+            }
+        }
+    }
+    
+    // Sorted distinct keys of both arrays, ignoring -1
+    private static long[] union(long[] keys, long[] shifted) {
+        long[] all = new long[keys.length + shifted.length];
+        int count = 0;
+        for (long key : keys) {
+            all[count++] = key;
+        }
+        for (long key : shifted) {
+            if (key >= 0) {
+                all[count++] = key;
+            }
+        }
+        Arrays.sort(all, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || all[i] != all[distinct - 1]) {
+                all[distinct++] = all[i];
+            }
+        }
+        return Arrays.copyOf(all, distinct);
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.*;
+
+// Wall-clock runs of MultiDimensionalBranchAndBound on five risk dimensions, each with a
+// capacity of 25% of its total, and the InstanceGenerator sector constraints. Each case runs
+// twice:
+//  - exact, in anytime mode with a time limit: how close the incumbent and the proven bound
+//    get before the limit
+//  - with a relative gap tolerance: how long it takes to prove a result within it
+// The gap column is the proven gap relative to the result's return.
+//
+// Usage: java -cp bin MultiDimensionalBenchmark [--quick]
+public class MultiDimensionalBenchmark {
+    private static final long SEED = 42;
+    private static final int DIMENSIONS = 5;
+    private static final int[] SIZES = {1000, 2000, 5000, 10000};
+    private static final double CAPACITY_FRACTION = 0.25;
+    private static final double GAP_TOLERANCE = 1e-3;
+    private static final InstanceGenerator.Family[] FAMILIES = {
+        InstanceGenerator.Family.UNCORRELATED,
+        InstanceGenerator.Family.WEAKLY_CORRELATED,
+        InstanceGenerator.Family.STRONGLY_CORRELATED
+    };
+    
+    public static void main(String[] args) {
+        boolean quick = args.length > 0 && args[0].equals("--quick");
+        long timeLimitMillis = quick ? 2_000 : 10_000;
+        
+        System.out.printf("%-32s %-10s %10s %12s %14s %10s%n",
+            "Case", "Mode", "ms", "Stop", "Nodes", "Gap %");
+        for (InstanceGenerator.Family family : FAMILIES) {
+            for (int n : SIZES) {
+                Investment[] investments = new InstanceGenerator(SEED).generate(family, n, 2, DIMENSIONS);
+                InstrumentTable table = InstrumentTable.of(investments);
+                double[] capacities = InstanceGenerator.capacities(investments, CAPACITY_FRACTION);
+                Map<String, Integer> min = InstanceGenerator.minInvestments(investments);
+                Map<String, Integer> max = InstanceGenerator.maxInvestments(investments);
+                String name = String.format("%s n=%d d=%d", family, n, DIMENSIONS);
+                run(name, "exact", table, capacities, min, max, 0, timeLimitMillis);
+                run(name, "gap " + GAP_TOLERANCE, table, capacities, min, max, GAP_TOLERANCE, timeLimitMillis);
+            }
+        }
+    }
+    
+    private static void run(String name, String mode, InstrumentTable table, double[] capacities,
+                            Map<String, Integer> min, Map<String, Integer> max,
+                            double gapTolerance, long timeLimitMillis) {
+        MultiDimensionalBranchAndBound solver = new MultiDimensionalBranchAndBound();
+        solver.setGapTolerance(gapTolerance);
+        long start = System.nanoTime();
+        KnapsackResult result = solver.solveWithConstraints(table, capacities, min, max,
+            new SolveLimits(timeLimitMillis, Long.MAX_VALUE));
+        long nanos = System.nanoTime() - start;
+        SearchStats stats = solver.getLastStats();
+        
+        System.out.printf("%-32s %-10s %10.1f %12s %14d %10.4f%n", name, mode, nanos / 1e6,
+            stats.getTermination(), stats.getNodesExpanded(),
+            100 * stats.getOptimalityGap() / Math.max(1e-9, result.getTotalReturn()));
+    }
+}
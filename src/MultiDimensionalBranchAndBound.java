@@ -0,0 +1,594 @@
+import java.util.*;
+
+// Branch and bound for several risk budgets at once (a multi-dimensional knapsack): a portfolio
+// must stay within the capacity of every risk dimension of the table, e.g. volatility, VaR
+// contribution and liquidity, as well as within the sector min/max counts.
+//
+// Bounds come from a surrogate relaxation. The dimensions are folded into one constraint,
+// sum over d of u[d] * risk[d] / capacity[d] <= 1, and the fractional knapsack over it bounds
+// every portfolio that fits all dimensions. The multipliers u are tuned at the root by
+// subgradient steps that move weight towards the dimensions the relaxed solution overuses,
+// which drives the bound down towards the LP relaxation. With the final multipliers:
+//  - investments are searched by surrogate return-to-risk ratio, and a node's bound is one
+//    binary search over prefix sums of surrogate risks and returns
+//  - reduced-cost fixing decides every investment whose opposite decision would cost more
+//    than the gap between the root bound and the greedy incumbent, so the search only
+//    branches on the investments around the critical one
+// The search is depth-first, include branch first, with one row of per-dimension usage per
+// level. Risks are stored item-major, so checking whether an investment fits reads one
+// contiguous run of doubles. Limits make it an anytime search like KnapsackBranchAndBound.
+public class MultiDimensionalBranchAndBound {
+    // Loop iterations between checks of the clock and the cancellation token
+    private static final int LIMIT_CHECK_INTERVAL = 1024;
+    private static final int SUBGRADIENT_ITERATIONS = 200;
+    private static final double INITIAL_STEP = 1.0;
+    private static final double STEP_DECAY = 0.95;
+    
+    private static final byte FREE = 0;
+    private static final byte FIXED_IN = 1;
+    private static final byte FIXED_OUT = 2;
+    private static final byte TAKEN = 1;
+    private static final byte SKIPPED = 2;
+    
+    private SolverListener listener = SolverListener.NONE;
+    private SearchStats lastStats;
+    private double gapTolerance = 0;
+    
+    // Receives phase timings, incumbent improvements and the search statistics of every solve
+    public void setListener(SolverListener listener) {
+        this.listener = listener;
+    }
+    
+    // Relative gap at which a solve may stop: nodes and investments whose bound is within
+    // gapTolerance * incumbent of the incumbent are pruned, so the result is at most that far
+    // from optimal and the stats report the proven bound. 0, the default, solves exactly.
+    public void setGapTolerance(double gapTolerance) {
+        if (gapTolerance < 0) {
+            throw new IllegalArgumentException("Gap tolerance must not be negative");
+        }
+        this.gapTolerance = gapTolerance;
+    }
+    
+    // Statistics of the most recent solveWithConstraints call, or null before the first one
+    public SearchStats getLastStats() {
+        return lastStats;
+    }
+    
+    public KnapsackResult solveWithConstraints(
+            Investment[] investments,
+            double[] capacities,
+            Map<String, Integer> minInvestments,
+            Map<String, Integer> maxInvestments) {
+        return solveWithConstraints(InstrumentTable.of(investments), capacities,
+            minInvestments, maxInvestments, SolveLimits.NONE);
+    }
+    
+    public KnapsackResult solveWithConstraints(
+            InstrumentTable investments,
+            double[] capacities,
+            Map<String, Integer> minInvestments,
+            Map<String, Integer> maxInvestments) {
+        return solveWithConstraints(investments, capacities, minInvestments, maxInvestments,
+            SolveLimits.NONE);
+    }
+    
+    // capacities[d] is the budget of risk dimension d. The result's total risk is the sum of
+    // the first dimension.
+    public KnapsackResult solveWithConstraints(
+            InstrumentTable investments,
+            double[] capacities,
+            Map<String, Integer> minInvestments,
+            Map<String, Integer> maxInvestments,
+            SolveLimits limits) {
+        
+        int m = investments.getRiskDimensions();
+        if (capacities.length != m) {
+            throw new IllegalArgumentException("Expected " + m + " capacities, got " + capacities.length);
+        }
+        String solver = getClass().getSimpleName();
+        PhaseTimer timer = new PhaseTimer(listener, solver);
+        
+        // Investments that fit every capacity on their own; no portfolio can hold the others
+        List<Integer> candidates = new ArrayList<>();
+        for (int row = 0; row < investments.size(); row++) {
+            boolean fits = true;
+            for (int d = 0; d < m && fits; d++) {
+                fits = investments.riskColumns[d][row] <= capacities[d];
+            }
+            if (fits) {
+                candidates.add(row);
+            }
+        }
+        int n = candidates.size();
+        
+        // Surrogate multipliers, then the search order by surrogate ratio
+        double[] scale = new double[m];
+        for (int d = 0; d < m; d++) {
+            scale[d] = capacities[d] > 0 ? 1 / capacities[d] : 0;
+        }
+        double[] candidateReturns = new double[n];
+        double[] candidateRisks = new double[n * m];
+        for (int j = 0; j < n; j++) {
+            int row = candidates.get(j);
+            candidateReturns[j] = investments.returns[row];
+            for (int d = 0; d < m; d++) {
+                candidateRisks[j * m + d] = investments.riskColumns[d][row] * scale[d];
+            }
+        }
+        double[] multipliers = surrogateMultipliers(candidateReturns, candidateRisks, m);
+        double[] surrogate = surrogateRisks(candidateRisks, multipliers, m);
+        Integer[] byRatio = ratioOrder(candidateReturns, surrogate);
+        
+        int[] order = new int[n];
+        double[] returns = new double[n];
+        double[] risks = new double[n * m];
+        double[] surrogateRisks = new double[n];
+        for (int i = 0; i < n; i++) {
+            int j = byRatio[i];
+            order[i] = candidates.get(j);
+            returns[i] = candidateReturns[j];
+            surrogateRisks[i] = surrogate[j];
+            for (int d = 0; d < m; d++) {
+                risks[i * m + d] = investments.riskColumns[d][order[i]];
+            }
+        }
+        
+        SectorConstraints constraints = new SectorConstraints(investments, order,
+            minInvestments, maxInvestments);
+        boolean feasible = constraints.isReachable();
+        for (double capacity : capacities) {
+            feasible &= capacity >= 0;
+        }
+        if (!feasible) {
+            timer.end("setup");
+            lastStats = new SearchStats(0, 0, 0, 0, 0, 0, 0, new ArrayList<>(), timer.phases(),
+                SearchStats.Termination.COMPLETED);
+            listener.onSearchCompleted(solver, lastStats);
+            return new KnapsackResult(new ArrayList<>(), 0, 0);
+        }
+        SurrogateBound bounds = new SurrogateBound(returns, surrogateRisks, multipliers, scale);
+        
+        // Greedy incumbent and reduced-cost fixing against it
+        boolean[] bestSelected = new boolean[n];
+        double bestValue = greedy(returns, risks, capacities, constraints, bestSelected);
+        List<SearchStats.Improvement> timeline = new ArrayList<>();
+        if (bestValue > Double.NEGATIVE_INFINITY) {
+            timeline.add(new SearchStats.Improvement(timer.elapsed(), 0, bestValue));
+            listener.onIncumbent(solver, bestValue, 0, timer.elapsed());
+        }
+        double[] usedRows = new double[(n + 1) * m];
+        double rootBound = bounds.bound(0, 0, usedRows, 0);
+        byte[] fixed = new byte[n];
+        // Largest bound given up to the gap tolerance; the proven bound is at least this
+        double prunedWithin = Double.NEGATIVE_INFINITY;
+        if (bestValue > Double.NEGATIVE_INFINITY) {
+            prunedWithin = bounds.fix(rootBound, bestValue, target(bestValue), fixed);
+        }
+        timer.end("setup");
+        
+        int sectorCount = constraints.sectorCount;
+        int[] counts = new int[sectorCount];
+        int unmet = constraints.initialUnmet;
+        byte[] decision = new byte[n];
+        double[] profits = new double[n + 1];
+        long nodesExpanded = 0;
+        long prunedByBound = 0;
+        long prunedBySector = 0;
+        long prunedByRisk = 0;
+        int peakDepth = 0;
+        if (unmet == 0 && 0 > bestValue) {
+            bestValue = 0;
+            Arrays.fill(bestSelected, false);
+        }
+        
+        SearchStats.Termination termination = SearchStats.Termination.COMPLETED;
+        long iterations = 0;
+        int i = 0;
+        search:
+        while (true) {
+            if (nodesExpanded >= limits.getMaxNodes()) {
+                termination = SearchStats.Termination.NODE_LIMIT;
+                break;
+            }
+            if (++iterations % LIMIT_CHECK_INTERVAL == 0) {
+                SearchStats.Termination reached = limits.check(timer.elapsed());
+                if (reached != null) {
+                    termination = reached;
+                    break;
+                }
+            }
+            
+            // Branch on position i, include first
+            double bound = i < n ? bounds.bound(i, profits[i], usedRows, i) : Double.NEGATIVE_INFINITY;
+            if (i < n && bound > target(bestValue)) {
+                nodesExpanded++;
+                peakDepth = Math.max(peakDepth, i);
+                int sector = constraints.sectorOf[i];
+                int count = sector >= 0 ? counts[sector] : 0;
+                if (fixed[i] != FIXED_OUT) {
+                    if (!fits(risks, i, usedRows, capacities)) {
+                        prunedByRisk++;
+                    } else if (!constraints.canInclude(i, count)) {
+                        prunedBySector++;
+                    } else {
+                        decision[i] = TAKEN;
+                        profits[i + 1] = profits[i] + returns[i];
+                        for (int d = 0; d < m; d++) {
+                            usedRows[(i + 1) * m + d] = usedRows[i * m + d] + risks[i * m + d];
+                        }
+                        if (sector >= 0) {
+                            if (constraints.meetsMinimum(i, count)) {
+                                unmet--;
+                            }
+                            counts[sector]++;
+                        }
+                        // Every minimum is met, so this portfolio is feasible as it stands
+                        if (unmet == 0 && profits[i + 1] > bestValue) {
+                            bestValue = profits[i + 1];
+                            for (int j = 0; j < n; j++) {
+                                bestSelected[j] = j <= i && decision[j] == TAKEN;
+                            }
+                            timeline.add(new SearchStats.Improvement(timer.elapsed(), nodesExpanded, bestValue));
+                            listener.onIncumbent(solver, bestValue, nodesExpanded, timer.elapsed());
+                            // A better incumbent fixes more investments
+                            prunedWithin = Math.max(prunedWithin,
+                                bounds.fix(rootBound, bestValue, target(bestValue), fixed));
+                        }
+                        i++;
+                        continue;
+                    }
+                }
+                if (fixed[i] != FIXED_IN) {
+                    if (constraints.canExclude(i, count)) {
+                        skip(i, decision, profits, usedRows, m);
+                        i++;
+                        continue;
+                    }
+                    prunedBySector++;
+                }
+            } else if (i < n) {
+                prunedByBound++;
+                if (bound > bestValue) {
+                    prunedWithin = Math.max(prunedWithin, bound);
+                }
+            }
+            
+            // Back up to the deepest taken investment whose skip branch is still open
+            while (true) {
+                i--;
+                if (i < 0) {
+                    break search;
+                }
+                if (decision[i] == TAKEN) {
+                    int sector = constraints.sectorOf[i];
+                    if (sector >= 0) {
+                        counts[sector]--;
+                        if (constraints.meetsMinimum(i, counts[sector])) {
+                            unmet++;
+                        }
+                    }
+                    int count = sector >= 0 ? counts[sector] : 0;
+                    if (fixed[i] != FIXED_IN && constraints.canExclude(i, count)) {
+                        skip(i, decision, profits, usedRows, m);
+                        i++;
+                        break;
+                    }
+                    decision[i] = SKIPPED;
+                }
+            }
+        }
+        timer.end("search");
+        
+        // Stopped early: the open skip branches along the current path bound what is left
+        double upperBound = Math.max(bestValue, prunedWithin);
+        if (termination != SearchStats.Termination.COMPLETED) {
+            if (i < n) {
+                upperBound = Math.max(upperBound, bounds.bound(i, profits[i], usedRows, i));
+            }
+            for (int j = Math.min(i, n) - 1; j >= 0; j--) {
+                if (decision[j] == TAKEN && fixed[j] != FIXED_IN) {
+                    upperBound = Math.max(upperBound, bounds.bound(j + 1, profits[j], usedRows, j));
+                }
+            }
+        }
+        
+        List<Integer> bestSolution = new ArrayList<>();
+        if (bestValue > Double.NEGATIVE_INFINITY) {
+            for (int j = 0; j < n; j++) {
+                if (bestSelected[j]) {
+                    bestSolution.add(order[j]);
+                }
+            }
+            Collections.sort(bestSolution);
+        }
+        timer.end("result");
+        lastStats = new SearchStats(nodesExpanded, prunedByBound, prunedBySector, prunedByRisk,
+            peakDepth, Math.max(0, bestValue), upperBound, timeline, timer.phases(), termination);
+        listener.onSearchCompleted(solver, lastStats);
+        
+        // Calculate total return and risk for the best solution
+        double totalReturn = 0;
+        double totalRisk = 0;
+        for (int idx : bestSolution) {
+            totalReturn += investments.returns[idx];
+            totalRisk += investments.risks[idx];
+        }
+        
+        return new KnapsackResult(bestSolution, totalReturn, totalRisk);
+    }
+    
+    public KnapsackResult solveWithConstraints(
+            Investment[] investments,
+            double[] capacities,
+            Map<String, Integer> minInvestments,
+            Map<String, Integer> maxInvestments,
+            SolveLimits limits) {
+        return solveWithConstraints(InstrumentTable.of(investments), capacities,
+            minInvestments, maxInvestments, limits);
+    }
+    
+    private double target(double bestValue) {
+        if (bestValue == Double.NEGATIVE_INFINITY) {
+            return bestValue;
+        }
+        return bestValue + gapTolerance * Math.abs(bestValue);
+    }
+    
+    private static boolean fits(double[] risks, int i, double[] usedRows, double[] capacities) {
+        int m = capacities.length;
+        for (int d = 0; d < m; d++) {
+            if (usedRows[i * m + d] + risks[i * m + d] > capacities[d]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static void skip(int i, byte[] decision, double[] profits, double[] usedRows, int m) {
+        decision[i] = SKIPPED;
+        profits[i + 1] = profits[i];
+        System.arraycopy(usedRows, i * m, usedRows, (i + 1) * m, m);
+    }
+    
+    // Meets the sector minimums first with the best-ratio investments of those sectors, then
+    // fills in ratio order. Returns the portfolio's return, or negative infinity if the
+    // minimums could not be met.
+    private static double greedy(double[] returns, double[] risks, double[] capacities,
+                                 SectorConstraints constraints, boolean[] selected) {
+        int n = returns.length;
+        int m = capacities.length;
+        double[] used = new double[m];
+        int[] counts = new int[constraints.sectorCount];
+        double profit = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < n; i++) {
+                int s = constraints.sectorOf[i];
+                int count = s >= 0 ? counts[s] : 0;
+                if (selected[i] || (pass == 0 && (s < 0 || count >= constraints.minCounts[s]))
+                        || !constraints.canInclude(i, count)) {
+                    continue;
+                }
+                boolean fits = true;
+                for (int d = 0; d < m && fits; d++) {
+                    fits = used[d] + risks[i * m + d] <= capacities[d];
+                }
+                if (fits) {
+                    selected[i] = true;
+                    profit += returns[i];
+                    for (int d = 0; d < m; d++) {
+                        used[d] += risks[i * m + d];
+                    }
+                    if (s >= 0) {
+                        counts[s]++;
+                    }
+                }
+            }
+        }
+        for (int s = 0; s < counts.length; s++) {
+            if (counts[s] < constraints.minCounts[s]) {
+                Arrays.fill(selected, false);
+                return Double.NEGATIVE_INFINITY;
+            }
+        }
+        return profit;
+    }
+    
+    // Multipliers (summing to 1) for risks already divided by their capacity. Each step solves
+    // the fractional surrogate knapsack and scales u[d] by exp(step * (usage[d] - 1)), so
+    // overused dimensions gain weight; the multipliers with the lowest bound are kept. Stops
+    // early once the relaxed solution fits every dimension, since its bound is then the LP's.
+    private static double[] surrogateMultipliers(double[] returns, double[] risks, int m) {
+        int n = returns.length;
+        double[] u = new double[m];
+        Arrays.fill(u, 1.0 / m);
+        double[] best = u.clone();
+        double bestBound = Double.POSITIVE_INFINITY;
+        double step = INITIAL_STEP;
+        double[] usage = new double[m];
+        for (int iteration = 0; iteration < SUBGRADIENT_ITERATIONS && n > 0; iteration++) {
+            double[] surrogate = surrogateRisks(risks, u, m);
+            long[] keys = ratioKeys(returns, surrogate);
+            Arrays.fill(usage, 0);
+            double bound = 0;
+            double room = 1;
+            for (long key : keys) {
+                int j = (int) key;
+                if (returns[j] <= 0) {
+                    break;
+                }
+                double x = surrogate[j] <= room ? 1 : room / surrogate[j];
+                bound += x * returns[j];
+                room -= x * surrogate[j];
+                for (int d = 0; d < m; d++) {
+                    usage[d] += x * risks[j * m + d];
+                }
+                if (x < 1) {
+                    break;
+                }
+            }
+            if (bound < bestBound) {
+                bestBound = bound;
+                best = u.clone();
+            }
+            double worst = Double.NEGATIVE_INFINITY;
+            for (int d = 0; d < m; d++) {
+                worst = Math.max(worst, usage[d] - 1);
+            }
+            if (worst <= 1e-9) {
+                break;
+            }
+            double total = 0;
+            for (int d = 0; d < m; d++) {
+                u[d] *= Math.exp(step * (usage[d] - 1));
+                total += u[d];
+            }
+            for (int d = 0; d < m; d++) {
+                u[d] /= total;
+            }
+            step *= STEP_DECAY;
+        }
+        return best;
+    }
+    
+    // Indices packed below a float image of their ratio, so sorting the longs orders the
+    // indices by descending ratio. Only the multiplier search uses this order; the float
+    // rounding may swap near-equal ratios, which changes its estimate but not the final bound.
+    private static long[] ratioKeys(double[] returns, double[] surrogate) {
+        int n = returns.length;
+        long[] keys = new long[n];
+        for (int j = 0; j < n; j++) {
+            float ratio;
+            if (surrogate[j] > 0) {
+                ratio = (float) (returns[j] / surrogate[j]);
+            } else {
+                ratio = returns[j] > 0 ? Float.POSITIVE_INFINITY : Float.NEGATIVE_INFINITY;
+            }
+            // Flip the bits so larger ratios give smaller signed keys
+            int bits = Float.floatToIntBits(ratio);
+            int descending = ~(bits ^ ((bits >> 31) & 0x7fffffff));
+            keys[j] = ((long) descending << 32) | j;
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+    
+    private static double[] surrogateRisks(double[] risks, double[] u, int m) {
+        double[] surrogate = new double[risks.length / m];
+        for (int j = 0; j < surrogate.length; j++) {
+            double s = 0;
+            for (int d = 0; d < m; d++) {
+                s += u[d] * risks[j * m + d];
+            }
+            surrogate[j] = s;
+        }
+        return surrogate;
+    }
+    
+    // Indices by descending return-to-surrogate-risk ratio, equal ratios in index order;
+    // riskless investments come first if they return something and last otherwise
+    private static Integer[] ratioOrder(double[] returns, double[] surrogate) {
+        int n = returns.length;
+        double[] ratios = new double[n];
+        Integer[] order = new Integer[n];
+        for (int j = 0; j < n; j++) {
+            if (surrogate[j] > 0) {
+                ratios[j] = returns[j] / surrogate[j];
+            } else {
+                ratios[j] = returns[j] > 0 ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+            }
+            order[j] = j;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(ratios[b], ratios[a]));
+        return order;
+    }
+    
+    // Fractional surrogate knapsack over positions [i, n) in ratio order, from prefix sums
+    private static final class SurrogateBound {
+        final double[] returns;
+        final double[] surrogateRisks;
+        // Multiplier over capacity for each dimension: usage d costs weights[d] of the room
+        final double[] weights;
+        final double[] prefixReturns;
+        final double[] prefixRisks;
+        // Positions from here on return nothing and never raise a bound
+        final int positiveEnd;
+        
+        SurrogateBound(double[] returns, double[] surrogateRisks, double[] multipliers, double[] scale) {
+            int n = returns.length;
+            this.returns = returns;
+            this.surrogateRisks = surrogateRisks;
+            weights = new double[multipliers.length];
+            for (int d = 0; d < weights.length; d++) {
+                weights[d] = multipliers[d] * scale[d];
+            }
+            int end = 0;
+            while (end < n && returns[end] > 0) {
+                end++;
+            }
+            positiveEnd = end;
+            prefixReturns = new double[n + 1];
+            prefixRisks = new double[n + 1];
+            for (int i = 0; i < n; i++) {
+                prefixReturns[i + 1] = prefixReturns[i] + returns[i];
+                prefixRisks[i + 1] = prefixRisks[i] + surrogateRisks[i];
+            }
+        }
+        
+        // Bound of a node at position i with the given return and usage row
+        double bound(int i, double profit, double[] usedRows, int row) {
+            if (i >= positiveEnd) {
+                return profit;
+            }
+            int m = weights.length;
+            double room = 1;
+            for (int d = 0; d < m; d++) {
+                room -= weights[d] * usedRows[row * m + d];
+            }
+            double limit = prefixRisks[i] + Math.max(0, room);
+            // Last k in [i, positiveEnd] with prefixRisks[k] <= limit
+            int lo = i;
+            int hi = positiveEnd;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (prefixRisks[mid] <= limit) {
+                    lo = mid;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            double value = profit + prefixReturns[lo] - prefixReturns[i];
+            if (lo < positiveEnd) {
+                value += (limit - prefixRisks[lo]) * returns[lo] / surrogateRisks[lo];
+            }
+            return value;
+        }
+        
+        // Reduced-cost fixing at the root: with the critical ratio r, flipping an investment
+        // costs the relaxation at least |return - r * risk|. Investments before the critical
+        // one that cannot be left out, and after it that cannot be taken, without dropping
+        // the bound to the target are fixed. Returns the largest flipped bound above the
+        // incumbent, which only the gap tolerance gave up.
+        double fix(double rootBound, double incumbent, double target, byte[] fixed) {
+            int n = returns.length;
+            double limit = Math.min(1, prefixRisks[n]);
+            int critical = 0;
+            while (critical < positiveEnd && prefixRisks[critical + 1] <= limit) {
+                critical++;
+            }
+            double ratio = critical < positiveEnd ? returns[critical] / surrogateRisks[critical] : 0;
+            double givenUp = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                double reducedCost = returns[i] - ratio * surrogateRisks[i];
+                double flipped = rootBound - Math.abs(reducedCost);
+                if (fixed[i] != FREE || i == critical || flipped > target) {
+                    continue;
+                }
+                fixed[i] = i < critical ? FIXED_IN : FIXED_OUT;
+                if (flipped > incumbent) {
+                    givenUp = Math.max(givenUp, flipped);
+                }
+            }
+            return givenUp;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Embeddable solve service. Solves run on a fixed pool of worker threads behind a bounded
+// queue; when the queue is full, submit() throws RejectedExecutionException right away (HTTP
+// 503 with Retry-After) instead of letting work pile up. Each worker owns its own solvers with
+// scratch reuse on, so DP tables and B&B node pools are allocated once per worker, not per
+// request, and no solver instance is ever shared between threads.
+//
+// HTTP: POST /solve?algorithm=dp|greedy|branch-and-bound&tolerance=25
+//            [&min=Tech:1,Energy:1][&max=Tech:3][&timeLimitMillis=500][&maxNodes=100000]
+// with the instruments as CSV in the body (the InstrumentLoader format, at most 64 MB; larger
+// bodies get 413). The response is text/plain: "return=...", "risk=..." and
+// "selected=<comma-separated row indices>" lines.
+// Requests are handled one thread each: virtual threads on runtimes that have them, a
+// cached pool of platform threads otherwise. Handler threads only parse and wait, so the
+// worker pool alone bounds the CPU spent on solves.
+public class OptimizationService implements AutoCloseable {
+    // Largest DP table a request may ask for; workers keep their table, so this also bounds
+    // the memory each worker holds on to. A table is n + 1 int rows of W + 1 cells, and every
+    // row also costs an array header and a reference, which dominates for narrow tables.
+    private static final long MAX_DP_BYTES = 100_000_000L;
+    private static final long DP_ROW_OVERHEAD_BYTES = 24;
+    // Open-set budget of each worker's hybrid branch and bound; its node pool is kept between
+    // requests, so the byte limit bounds what every worker holds on to
+    private static final long WORKER_OPEN_NODES = 1_000_000L;
+    private static final long WORKER_OPEN_BYTES = 64L << 20;
+    // Largest CSV body a request may send
+    private static final int MAX_BODY_BYTES = 64 << 20;
+    private static final int BACKLOG = 1024;
+    
+    private final ThreadPoolExecutor workers;
+    private final ThreadLocal<WorkerSolvers> solvers;
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private HttpServer server;
+    private ExecutorService requestExecutor;
+    
+    // One worker per processor and a queue four times that long
+    public OptimizationService() {
+        this(Runtime.getRuntime().availableProcessors(),
+             4 * Runtime.getRuntime().availableProcessors(), SolverListener.NONE);
+    }
+    
+    // The listener receives the events of every worker's solvers, so it must be thread-safe,
+    // e.g. a SolverMetrics
+    public OptimizationService(int workerCount, int queueCapacity, SolverListener listener) {
+        if (workerCount <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Worker count and queue capacity must be positive");
+        }
+        workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), daemonThreads("optimizer-worker"),
+            new ThreadPoolExecutor.AbortPolicy());
+        solvers = ThreadLocal.withInitial(() -> new WorkerSolvers(listener));
+    }
+    
+    // Queues the request for a worker. Throws RejectedExecutionException when the queue is
+    // full or the service is closed, and IllegalArgumentException for a DP table over the limit.
+    public Future<KnapsackResult> submit(SolveRequest request) {
+        if (request.getAlgorithm() == SolveRequest.Algorithm.DP) {
+            // In doubles, so a huge tolerance cannot overflow
+            double width = Math.floor(request.getRiskTolerance() * KnapsackDP.SCALE) + 1;
+            double bytes = (request.getInvestments().size() + 1.0) * (DP_ROW_OVERHEAD_BYTES + 4 * width);
+            if (bytes > MAX_DP_BYTES) {
+                throw new IllegalArgumentException(String.format(Locale.ROOT, "DP table of %.3g bytes exceeds %d;"
+                    + " use greedy or branch-and-bound", bytes, MAX_DP_BYTES));
+            }
+        }
+        try {
+            Future<KnapsackResult> future = workers.submit(() -> run(request));
+            accepted.increment();
+            return future;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+    
+    // Serves POST /solve on the loopback interface; port 0 picks a free port. Returns the port.
+    public synchronized int start(int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Service already started");
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        server.createContext("/solve", this::handle);
+        requestExecutor = requestExecutor();
+        server.setExecutor(requestExecutor);
+        server.start();
+        return server.getAddress().getPort();
+    }
+    
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+    
+    // Requests turned away because the queue was full
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+    
+    public int getQueueSize() {
+        return workers.getQueue().size();
+    }
+    
+    // Stops the HTTP endpoint and the workers; queued solves are dropped, running ones finish
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            requestExecutor.shutdownNow();
+        }
+        workers.shutdownNow();
+    }
+    
+    private KnapsackResult run(SolveRequest request) {
+        WorkerSolvers worker = solvers.get();
+        switch (request.getAlgorithm()) {
+            case DP:
+                return worker.dp.solve(request.getInvestments(), request.getRiskTolerance());
+            case GREEDY:
+                return worker.greedy.solve(request.getInvestments(), request.getRiskTolerance());
+            default:
+                return worker.branchAndBound.solveWithConstraints(request.getInvestments(),
+                    request.getRiskTolerance(), request.getMinInvestments(),
+                    request.getMaxInvestments(), new ArrayList<>(), request.getLimits());
+        }
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, "Use POST\n");
+                return;
+            }
+            Future<KnapsackResult> future;
+            try {
+                future = submit(parse(exchange));
+            } catch (BodyTooLargeException e) {
+                respond(exchange, 413, e.getMessage() + "\n");
+                return;
+            } catch (IOException | IllegalArgumentException e) {
+                respond(exchange, 400, e.getMessage() + "\n");
+                return;
+            } catch (RejectedExecutionException e) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503, "Queue full\n");
+                return;
+            }
+            try {
+                respond(exchange, 200, format(future.get()));
+            } catch (ExecutionException e) {
+                respond(exchange, 500, e.getCause() + "\n");
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, "Shutting down\n");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+    
+    private static SolveRequest parse(HttpExchange exchange) throws IOException {
+        Map<String, String> params = query(exchange.getRequestURI());
+        String tolerance = params.get("tolerance");
+        if (tolerance == null) {
+            throw new IllegalArgumentException("Missing tolerance parameter");
+        }
+        SolveRequest.Algorithm algorithm = SolveRequest.Algorithm.valueOf(
+            params.getOrDefault("algorithm", "branch-and-bound").toUpperCase(Locale.ROOT).replace('-', '_'));
+        SolveLimits limits = new SolveLimits(
+            Long.parseLong(params.getOrDefault("timeLimitMillis", String.valueOf(Long.MAX_VALUE))),
+            Long.parseLong(params.getOrDefault("maxNodes", String.valueOf(Long.MAX_VALUE))));
+        byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+        if (body.length > MAX_BODY_BYTES) {
+            throw new BodyTooLargeException();
+        }
+        InstrumentTable investments = InstrumentLoader.parseCsv(ByteBuffer.wrap(body));
+        return new SolveRequest(algorithm, investments, Double.parseDouble(tolerance),
+            sectorCounts(params.get("min")), sectorCounts(params.get("max")), limits);
+    }
+    
+    private static Map<String, String> query(URI uri) {
+        Map<String, String> params = new HashMap<>();
+        String raw = uri.getRawQuery();
+        if (raw != null) {
+            for (String pair : raw.split("&")) {
+                int eq = pair.indexOf('=');
+                String key = eq < 0 ? pair : pair.substring(0, eq);
+                String value = eq < 0 ? "" : pair.substring(eq + 1);
+                params.put(URLDecoder.decode(key, StandardCharsets.UTF_8),
+                           URLDecoder.decode(value, StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+    
+    // "Tech:1,Energy:2" to {Tech=1, Energy=2}
+    private static Map<String, Integer> sectorCounts(String value) {
+        Map<String, Integer> counts = new HashMap<>();
+        if (value != null && !value.isEmpty()) {
+            for (String entry : value.split(",")) {
+                int colon = entry.lastIndexOf(':');
+                if (colon < 0) {
+                    throw new IllegalArgumentException("Expected sector:count, got " + entry);
+                }
+                counts.put(entry.substring(0, colon), Integer.parseInt(entry.substring(colon + 1)));
+            }
+        }
+        return counts;
+    }
+    
+    private static String format(KnapsackResult result) {
+        StringBuilder body = new StringBuilder();
+        body.append(String.format(Locale.ROOT, "return=%.2f%nrisk=%.2f%nselected=",
+            result.getTotalReturn(), result.getTotalRisk()));
+        List<Integer> selected = result.getSelectedIndices();
+        for (int i = 0; i < selected.size(); i++) {
+            body.append(i > 0 ? "," : "").append(selected.get(i));
+        }
+        return body.append('\n').toString();
+    }
+    
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+    
+    // Virtual thread per request where the runtime provides it (Java 21+), looked up
+    // reflectively so the code still builds and runs on older runtimes
+    private static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(daemonThreads("optimizer-request"));
+        }
+    }
+    
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    private static class BodyTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+        
+        BodyTooLargeException() {
+            super("Request body exceeds " + MAX_BODY_BYTES + " bytes");
+        }
+    }
+    
+    // Solvers owned by one worker thread
+    private static class WorkerSolvers {
+        final KnapsackDP dp = new KnapsackDP();
+        final KnapsackGreedy greedy = new KnapsackGreedy();
+        final KnapsackBranchAndBound branchAndBound = new KnapsackBranchAndBound(
+            KnapsackBranchAndBound.SearchStrategy.HYBRID, WORKER_OPEN_NODES, WORKER_OPEN_BYTES);
+        
+        WorkerSolvers(SolverListener listener) {
+            dp.setScratchReuse(true);
+            branchAndBound.setScratchReuse(true);
+            dp.setListener(listener);
+            greedy.setListener(listener);
+            branchAndBound.setListener(listener);
+        }
+    }
+}
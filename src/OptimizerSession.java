@@ -0,0 +1,182 @@
+import java.util.*;
+
+// Stateful optimizer for a universe of investments that changes a few instruments at a time.
+// Every investment gets an id when it enters the session; results list ids, not positions.
+//
+// The DP table is kept between solves with one row per investment in the session's row
+// order. Row r only depends on the first r investments, so after a change only the rows from
+// the first changed investment onwards are recomputed. Updated and added investments are
+// moved to the end of the row order, which keeps the instruments that change often in the
+// last rows: once they are there, re-estimating one of them costs a few rows, not a solve.
+//
+// Branch and bound is warm-started from the previous solution (the ids that are still in
+// the session), so after a small change it mostly has to prove that portfolio optimal.
+public class OptimizerSession {
+    private final double riskTolerance;
+    private final Map<String, Integer> minInvestments;
+    private final Map<String, Integer> maxInvestments;
+    private final KnapsackDP dp;
+    private final KnapsackBranchAndBound bnb;
+    private final int capacity;
+    
+    // Investments by id; null once removed
+    private final List<Investment> investments = new ArrayList<>();
+    // Ids in DP row order, row r + 1 adds rowOrder[r]
+    private int[] rowOrder = new int[16];
+    private int size;
+    private final List<int[]> rows = new ArrayList<>();
+    // Rows from here on are out of date
+    private int firstDirtyRow = 1;
+    private List<Integer> lastBnbSolution = new ArrayList<>();
+    
+    public OptimizerSession(Investment[] investments, double riskTolerance) {
+        this(investments, riskTolerance, new HashMap<>(), new HashMap<>());
+    }
+    
+    public OptimizerSession(
+            Investment[] investments,
+            double riskTolerance,
+            Map<String, Integer> minInvestments,
+            Map<String, Integer> maxInvestments) {
+        this(investments, riskTolerance, minInvestments, maxInvestments,
+            new KnapsackDP(), new KnapsackBranchAndBound());
+    }
+    
+    // The DP solver's row fill is used for the table, so a ParallelKnapsackDP fills it in parallel
+    public OptimizerSession(
+            Investment[] investments,
+            double riskTolerance,
+            Map<String, Integer> minInvestments,
+            Map<String, Integer> maxInvestments,
+            KnapsackDP dp,
+            KnapsackBranchAndBound bnb) {
+        this.riskTolerance = riskTolerance;
+        this.minInvestments = minInvestments;
+        this.maxInvestments = maxInvestments;
+        this.dp = dp;
+        this.bnb = bnb;
+        this.capacity = (int)(riskTolerance * KnapsackDP.SCALE);
+        rows.add(new int[capacity + 1]);
+        for (Investment inv : investments) {
+            add(inv);
+        }
+    }
+    
+    // Adds an investment and returns its id; ids of the initial investments are their indices
+    public int add(Investment investment) {
+        int id = investments.size();
+        investments.add(investment);
+        if (size == rowOrder.length) {
+            rowOrder = Arrays.copyOf(rowOrder, size * 2);
+        }
+        rowOrder[size++] = id;
+        firstDirtyRow = Math.min(firstDirtyRow, size);
+        return id;
+    }
+    
+    // Replaces the investment behind 'id', e.g. with re-estimated return or risk
+    public void update(int id, Investment investment) {
+        int position = positionOf(id);
+        investments.set(id, investment);
+        System.arraycopy(rowOrder, position + 1, rowOrder, position, size - position - 1);
+        rowOrder[size - 1] = id;
+        firstDirtyRow = Math.min(firstDirtyRow, position + 1);
+    }
+    
+    public void remove(int id) {
+        int position = positionOf(id);
+        investments.set(id, null);
+        System.arraycopy(rowOrder, position + 1, rowOrder, position, size - position - 1);
+        size--;
+        firstDirtyRow = Math.min(firstDirtyRow, position + 1);
+    }
+    
+    // The investment behind 'id', or null if it was removed
+    public Investment getInvestment(int id) {
+        return investments.get(id);
+    }
+    
+    // Optimal portfolio by DP on the current investments, recomputing only out-of-date rows
+    public KnapsackResult solveDP() {
+        while (rows.size() > size + 1) {
+            rows.remove(rows.size() - 1);
+        }
+        while (rows.size() < size + 1) {
+            rows.add(new int[capacity + 1]);
+        }
+        for (int r = firstDirtyRow; r <= size; r++) {
+            Investment inv = investments.get(rowOrder[r - 1]);
+            dp.fillRow(rows.get(r - 1), rows.get(r),
+                (int)(inv.getExpectedReturn() * KnapsackDP.SCALE),
+                (int)(inv.getRiskFactor() * KnapsackDP.SCALE));
+        }
+        firstDirtyRow = size + 1;
+        
+        // Backtrack to find selected investments
+        List<Integer> selectedIds = new ArrayList<>();
+        int remainingCapacity = capacity;
+        for (int r = size; r > 0; r--) {
+            if (rows.get(r)[remainingCapacity] != rows.get(r - 1)[remainingCapacity]) {
+                int id = rowOrder[r - 1];
+                selectedIds.add(id);
+                remainingCapacity -= (int)(investments.get(id).getRiskFactor() * KnapsackDP.SCALE);
+            }
+        }
+        Collections.sort(selectedIds);
+        return toResult(selectedIds);
+    }
+    
+    // Optimal portfolio under the sector constraints, warm-started from the previous one
+    public KnapsackResult solveWithConstraints() {
+        // Live ids in id order, so positions and ids map back and forth in one pass
+        int[] ids = new int[size];
+        Investment[] live = new Investment[size];
+        int[] positionOfId = new int[investments.size()];
+        int count = 0;
+        for (int id = 0; id < investments.size(); id++) {
+            positionOfId[id] = -1;
+            if (investments.get(id) != null) {
+                positionOfId[id] = count;
+                ids[count] = id;
+                live[count++] = investments.get(id);
+            }
+        }
+        
+        List<Integer> warmStart = new ArrayList<>();
+        for (int id : lastBnbSolution) {
+            if (positionOfId[id] >= 0) {
+                warmStart.add(positionOfId[id]);
+            }
+        }
+        
+        KnapsackResult result = bnb.solveWithConstraints(live, riskTolerance,
+            minInvestments, maxInvestments, warmStart);
+        List<Integer> selectedIds = new ArrayList<>();
+        for (int position : result.getSelectedIndices()) {
+            selectedIds.add(ids[position]);
+        }
+        lastBnbSolution = selectedIds;
+        return new KnapsackResult(selectedIds, result.getTotalReturn(), result.getTotalRisk());
+    }
+    
+    private int positionOf(int id) {
+        if (id >= 0 && id < investments.size() && investments.get(id) != null) {
+            for (int position = size - 1; position >= 0; position--) {
+                if (rowOrder[position] == id) {
+                    return position;
+                }
+            }
+        }
+        throw new IllegalArgumentException("No investment with id " + id + " in this session");
+    }
+    
+    private KnapsackResult toResult(List<Integer> selectedIds) {
+        double totalReturn = 0;
+        double totalRisk = 0;
+        for (int id : selectedIds) {
+            totalReturn += investments.get(id).getExpectedReturn();
+            totalRisk += investments.get(id).getRiskFactor();
+        }
+        return new KnapsackResult(selectedIds, totalReturn, totalRisk);
+    }
+}
@@ -0,0 +1,335 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Branch and bound with sector constraints that searches on several cores.
+// Subtrees run as fork-join tasks, so every worker has its own deque of open subtrees and
+// idle workers steal from the others. Near the root a task forks its exclude branch while
+// other workers are short of work and dives into the include branch itself; deeper down it
+// continues depth-first in place with the path in per-position arrays, undoing its own
+// decisions, so it allocates nothing per node and its depth is not limited by the stack.
+// All workers prune against one shared incumbent. Ties on return are broken by the
+// selection itself (the portfolio taking the earlier high-ratio investment wins) and
+// subtrees whose bound only equals the incumbent are still explored, so the result does
+// not depend on thread timing.
+public class ParallelBranchAndBound {
+    // Forking stops below this depth or once a worker has enough queued tasks
+    private static final int MAX_SPLIT_DEPTH = 24;
+    private static final int MAX_SURPLUS_TASKS = 3;
+    private static final byte TAKEN = 1;
+    private static final byte SKIPPED = 2;
+    
+    // Created once and reused by every solve of this instance
+    private final ForkJoinPool pool;
+    private final KnapsackBranchAndBound.BoundType boundType;
+    private SolverListener listener = SolverListener.NONE;
+    private SearchStats lastStats;
+    
+    public ParallelBranchAndBound() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    public ParallelBranchAndBound(int parallelism) {
+        this(parallelism, KnapsackBranchAndBound.BoundType.DANTZIG);
+    }
+    
+    public ParallelBranchAndBound(int parallelism, KnapsackBranchAndBound.BoundType boundType) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.boundType = boundType;
+    }
+    
+    // Receives phase timings and the search statistics of every solve, on the calling thread.
+    // Incumbents are found on the workers, so onIncumbent is not called.
+    public void setListener(SolverListener listener) {
+        this.listener = listener;
+    }
+    
+    // Statistics of the most recent solveWithConstraints call, or null before the first one.
+    // Nodes and bound prunes are summed over all workers; the other counters stay 0.
+    public SearchStats getLastStats() {
+        return lastStats;
+    }
+    
+    // Shuts down the worker threads; the solver cannot be used afterwards
+    public void shutdown() {
+        pool.shutdown();
+    }
+    
+    public KnapsackResult solveWithConstraints(
+            Investment[] investments,
+            double riskTolerance,
+            Map<String, Integer> minInvestments,
+            Map<String, Integer> maxInvestments) {
+        return solveWithConstraints(InstrumentTable.of(investments), riskTolerance,
+            minInvestments, maxInvestments);
+    }
+    
+    public KnapsackResult solveWithConstraints(
+            InstrumentTable investments,
+            double riskTolerance,
+            Map<String, Integer> minInvestments,
+            Map<String, Integer> maxInvestments) {
+        
+        int n = investments.size();
+        String solver = getClass().getSimpleName();
+        PhaseTimer timer = new PhaseTimer(listener, solver);
+        
+        // Search investments by value-to-weight ratio for better bound calculation
+        int[] sortedToOriginal = investments.ratioOrder();
+        double[] risks = new double[n];
+        double[] returns = new double[n];
+        for (int i = 0; i < n; i++) {
+            risks[i] = investments.risks[sortedToOriginal[i]];
+            returns[i] = investments.returns[sortedToOriginal[i]];
+        }
+        
+        SectorConstraints constraints = new SectorConstraints(investments, sortedToOriginal,
+            minInvestments, maxInvestments);
+        if (!constraints.isReachable()) {
+            timer.end("setup");
+            lastStats = new SearchStats(0, 0, 0, 0, 0, 0, 0, new ArrayList<>(), timer.phases(),
+                SearchStats.Termination.COMPLETED);
+            listener.onSearchCompleted(solver, lastStats);
+            return new KnapsackResult(new ArrayList<>(), 0, 0);
+        }
+        
+        Search search = new Search(risks, returns, riskTolerance, constraints, boundType);
+        timer.end("setup");
+        pool.invoke(search.new SearchTask(-1, 0, 0, constraints.initialUnmet,
+            new int[constraints.sectorCount], new long[(n + 63) >>> 6]));
+        timer.end("search");
+        
+        Incumbent best = search.incumbent.get();
+        long[] bestSelected = best.selected;
+        List<Integer> bestSolution = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if ((bestSelected[i >>> 6] & (1L << i)) != 0) {
+                bestSolution.add(sortedToOriginal[i]);
+            }
+        }
+        
+        // Calculate total return and risk for the best solution
+        double totalReturn = 0;
+        double totalRisk = 0;
+        for (int idx : bestSolution) {
+            totalReturn += investments.returns[idx];
+            totalRisk += investments.risks[idx];
+        }
+        timer.end("result");
+        lastStats = new SearchStats(search.nodesExpanded.sum(), search.prunedByBound.sum(), 0, 0, 0,
+            best.value, best.value, new ArrayList<>(), timer.phases(), SearchStats.Termination.COMPLETED);
+        listener.onSearchCompleted(solver, lastStats);
+        
+        return new KnapsackResult(bestSolution, totalReturn, totalRisk);
+    }
+    
+    // Best portfolio found so far; replaced as a whole so workers always see a consistent pair
+    private static final class Incumbent {
+        final double value;
+        final long[] selected;
+        
+        Incumbent(double value, long[] selected) {
+            this.value = value;
+            this.selected = selected;
+        }
+        
+        // Whether (value, selected) beats this incumbent
+        boolean isWorseThan(double otherValue, long[] otherSelected) {
+            if (value != otherValue) {
+                return otherValue > value;
+            }
+            for (int w = 0; w < selected.length; w++) {
+                long diff = selected[w] ^ otherSelected[w];
+                if (diff != 0) {
+                    return (otherSelected[w] & Long.lowestOneBit(diff)) != 0;
+                }
+            }
+            return false;
+        }
+    }
+    
+    // Shared, read-only problem data plus the incumbent all tasks prune against
+    private static final class Search {
+        final double[] risks;
+        final double[] returns;
+        final double capacity;
+        final SectorConstraints constraints;
+        final RatioBounds bounds;
+        final boolean martelloToth;
+        final AtomicReference<Incumbent> incumbent;
+        // Each task adds its own counts once it is done
+        final LongAdder nodesExpanded = new LongAdder();
+        final LongAdder prunedByBound = new LongAdder();
+        
+        Search(double[] risks, double[] returns, double capacity, SectorConstraints constraints,
+               KnapsackBranchAndBound.BoundType boundType) {
+            this.risks = risks;
+            this.returns = returns;
+            this.capacity = capacity;
+            this.constraints = constraints;
+            this.bounds = new RatioBounds(risks, returns, capacity, constraints);
+            this.martelloToth = boundType == KnapsackBranchAndBound.BoundType.MARTELLO_TOTH;
+            this.incumbent = new AtomicReference<>(new Incumbent(0, new long[(risks.length + 63) >>> 6]));
+        }
+        
+        void offer(double value, long[] selected) {
+            Incumbent current = incumbent.get();
+            Incumbent candidate = null;
+            while (current.isWorseThan(value, selected)) {
+                if (candidate == null) {
+                    candidate = new Incumbent(value, selected.clone());
+                }
+                if (incumbent.compareAndSet(current, candidate)) {
+                    return;
+                }
+                current = incumbent.get();
+            }
+        }
+        
+        // A subtree whose decisions up to 'level' are fixed. The task owns its arrays and
+        // mutates them in place while it searches.
+        final class SearchTask extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+            final int level;
+            final double profit;
+            final double weight;
+            final int unmet;
+            final int[] sectorCounts;
+            final long[] selected;
+            final List<SearchTask> forked = new ArrayList<>();
+            
+            SearchTask(int level, double profit, double weight, int unmet, int[] sectorCounts, long[] selected) {
+                this.level = level;
+                this.profit = profit;
+                this.weight = weight;
+                this.unmet = unmet;
+                this.sectorCounts = sectorCounts;
+                this.selected = selected;
+            }
+            
+            private double bound(int level, double profit, double weight) {
+                return martelloToth
+                    ? bounds.martelloToth(level, profit, weight, sectorCounts, 0)
+                    : bounds.dantzig(level, profit, weight);
+            }
+            
+            @Override
+            protected void compute() {
+                if (level < 0 && unmet == 0) {
+                    offer(profit, selected);
+                }
+                search();
+                for (SearchTask task : forked) {
+                    task.join();
+                }
+            }
+            
+            // Depth-first below 'level', include branch first. Entry k of the arrays belongs
+            // to the node whose last decided position is level + k.
+            private void search() {
+                int n = risks.length;
+                double[] profits = new double[n - level];
+                double[] weights = new double[n - level];
+                int[] unmets = new int[n - level];
+                byte[] decisions = new byte[n - level];
+                boolean[] excludeOpen = new boolean[n - level];
+                profits[0] = profit;
+                weights[0] = weight;
+                unmets[0] = unmet;
+                long expanded = 0;
+                long pruned = 0;
+                
+                int position = level;
+                while (true) {
+                    int k = position - level;
+                    int next = position + 1;
+                    boolean open = next < n;
+                    if (open) {
+                        expanded++;
+                        if (bound(position, profits[k], weights[k]) < incumbent.get().value) {
+                            pruned++;
+                            open = false;
+                        }
+                    }
+                    if (open) {
+                        int sector = constraints.sectorOf[next];
+                        int count = sector >= 0 ? sectorCounts[sector] : 0;
+                        boolean exclude = constraints.canExclude(next, count);
+                        
+                        // Hand the exclude branch to another worker while there is demand for work
+                        if (exclude && next < MAX_SPLIT_DEPTH && getSurplusQueuedTaskCount() < MAX_SURPLUS_TASKS) {
+                            SearchTask task = new SearchTask(next, profits[k], weights[k], unmets[k],
+                                sectorCounts.clone(), selected.clone());
+                            task.fork();
+                            forked.add(task);
+                            exclude = false;
+                        }
+                        excludeOpen[k + 1] = exclude;
+                        
+                        // Try including the next investment
+                        if (weights[k] + risks[next] <= capacity && constraints.canInclude(next, count)) {
+                            selected[next >>> 6] |= 1L << next;
+                            int childUnmet = unmets[k];
+                            if (sector >= 0) {
+                                sectorCounts[sector]++;
+                                if (constraints.meetsMinimum(next, count)) {
+                                    childUnmet--;
+                                }
+                            }
+                            decisions[k + 1] = TAKEN;
+                            profits[k + 1] = profits[k] + returns[next];
+                            weights[k + 1] = weights[k] + risks[next];
+                            unmets[k + 1] = childUnmet;
+                            
+                            // Every minimum is met, so this portfolio is feasible as it stands
+                            if (childUnmet == 0) {
+                                offer(profits[k + 1], selected);
+                            }
+                            position = next;
+                            continue;
+                        }
+                        
+                        // Try excluding it
+                        if (exclude) {
+                            skip(k + 1, decisions, profits, weights, unmets);
+                            position = next;
+                            continue;
+                        }
+                    }
+                    
+                    // Back up to the deepest included investment whose exclude branch is open
+                    while (true) {
+                        if (position == level) {
+                            nodesExpanded.add(expanded);
+                            prunedByBound.add(pruned);
+                            return;
+                        }
+                        k = position - level;
+                        if (decisions[k] == TAKEN) {
+                            int sector = constraints.sectorOf[position];
+                            if (sector >= 0) {
+                                sectorCounts[sector]--;
+                            }
+                            selected[position >>> 6] &= ~(1L << position);
+                            if (excludeOpen[k]) {
+                                skip(k, decisions, profits, weights, unmets);
+                                break;
+                            }
+                        }
+                        position--;
+                    }
+                }
+            }
+            
+            private void skip(int k, byte[] decisions, double[] profits, double[] weights, int[] unmets) {
+                decisions[k] = SKIPPED;
+                profits[k] = profits[k - 1];
+                weights[k] = weights[k - 1];
+                unmets[k] = unmets[k - 1];
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.concurrent.*;
+
+// KnapsackDP that fills each table row in parallel. Every cell of row i only reads
+// row i-1, so a row is split into capacity chunks that run as fork-join tasks.
+// The table contents are the same as the sequential solver, so the selections are too.
+public class ParallelKnapsackDP extends KnapsackDP {
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 14;
+    // Batch results backtracked per task; each one is an O(n) walk over the shared table
+    private static final int BACKTRACK_CHUNK_SIZE = 8;
+    
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final boolean ownsPool;
+    
+    public ParallelKnapsackDP() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE, false);
+    }
+    
+    public ParallelKnapsackDP(int parallelism, int chunkSize) {
+        this(new ForkJoinPool(parallelism), chunkSize, true);
+    }
+    
+    private ParallelKnapsackDP(ForkJoinPool pool, int chunkSize, boolean ownsPool) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.ownsPool = ownsPool;
+    }
+    
+    @Override
+    void fillRow(int[] prev, int[] next, int value, int weight) {
+        if (prev.length <= chunkSize) {
+            super.fillRow(prev, next, value, weight);
+            return;
+        }
+        pool.invoke(new RowTask(prev, next, value, weight, 0, prev.length));
+    }
+    
+    // Batch results only read the finished table, so they are backtracked concurrently
+    @Override
+    void backtrackAll(int[][] dp, int[] weights, int[] capacities, InstrumentTable investments,
+                      KnapsackResult[] results) {
+        if (capacities.length <= BACKTRACK_CHUNK_SIZE) {
+            super.backtrackAll(dp, weights, capacities, investments, results);
+            return;
+        }
+        pool.invoke(new BacktrackTask(dp, weights, capacities, investments, results, 0, capacities.length));
+    }
+    
+    // Shuts down the worker threads if this solver created its own pool
+    public void shutdown() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+    
+    private class RowTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final int[] prev;
+        final int[] next;
+        final int value;
+        final int weight;
+        final int from;
+        final int to;
+        
+        RowTask(int[] prev, int[] next, int value, int weight, int from, int to) {
+            this.prev = prev;
+            this.next = next;
+            this.value = value;
+            this.weight = weight;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                // Cells below the item's weight are a plain copy of the previous row
+                int split = Math.max(from, Math.min(to, weight));
+                System.arraycopy(prev, from, next, from, split - from);
+                for (int w = split; w < to; w++) {
+                    next[w] = Math.max(value + prev[w-weight], prev[w]);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RowTask(prev, next, value, weight, from, mid),
+                      new RowTask(prev, next, value, weight, mid, to));
+        }
+    }
+    
+    private class BacktrackTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final int[][] dp;
+        final int[] weights;
+        final int[] capacities;
+        final InstrumentTable investments;
+        final KnapsackResult[] results;
+        final int from;
+        final int to;
+        
+        BacktrackTask(int[][] dp, int[] weights, int[] capacities, InstrumentTable investments,
+                      KnapsackResult[] results, int from, int to) {
+            this.dp = dp;
+            this.weights = weights;
+            this.capacities = capacities;
+            this.investments = investments;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= BACKTRACK_CHUNK_SIZE) {
+                for (int t = from; t < to; t++) {
+                    results[t] = backtrack(dp, weights, capacities[t], investments);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BacktrackTask(dp, weights, capacities, investments, results, from, mid),
+                      new BacktrackTask(dp, weights, capacities, investments, results, mid, to));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.*;
+
+// Sparse 0/1 knapsack DP over reachable (weight, value) states instead of a capacity table.
+// After item i the states form a Pareto frontier: sorted by weight, strictly increasing in
+// value, so no state is dominated by a lighter one. Adding an item merges the frontier with
+// a shifted copy of itself. Every level keeps a parent pointer per state, so the selection
+// behind any final state can be rebuilt; the weights and values of a level are dropped once
+// the next one is built, so only the final level and 4 bytes per earlier state are kept.
+// Time and memory grow with the number of non-dominated states, not with the capacity
+// resolution.
+class ParetoFrontier {
+    private final long[] itemWeights;
+    // Final frontier
+    private final long[] weights;
+    private final double[] values;
+    // Index of the state in the previous level; negative (-index - 1) when the item was taken
+    private final int[][] parents;
+    private long statesBuilt;
+    
+    ParetoFrontier(long[] itemWeights, double[] itemValues, long capacity) {
+        int n = itemWeights.length;
+        this.itemWeights = itemWeights;
+        parents = new int[n + 1][];
+        parents[0] = new int[] {0};
+        long[] prevW = {0};
+        double[] prevV = {0};
+        
+        for (int i = 0; i < n; i++) {
+            int size = prevW.length;
+            long[] nextW = new long[2 * size];
+            double[] nextV = new double[2 * size];
+            int[] nextP = new int[2 * size];
+            int count = 0;
+            
+            long w = itemWeights[i];
+            double v = itemValues[i];
+            int a = 0;
+            int b = 0;
+            while (a < size || (b < size && prevW[b] + w <= capacity)) {
+                boolean fromShifted = b < size && prevW[b] + w <= capacity
+                    && (a == size || prevW[b] + w < prevW[a]
+                        || (prevW[b] + w == prevW[a] && prevV[b] + v > prevV[a]));
+                long stateW;
+                double stateV;
+                int parent;
+                if (fromShifted) {
+                    stateW = prevW[b] + w;
+                    stateV = prevV[b] + v;
+                    parent = -b - 1;
+                    b++;
+                } else {
+                    stateW = prevW[a];
+                    stateV = prevV[a];
+                    parent = a;
+                    a++;
+                }
+                // Keep the state only if it beats every lighter state already kept
+                if (count == 0 || stateV > nextV[count - 1]) {
+                    if (count > 0 && nextW[count - 1] == stateW) {
+                        count--;
+                    }
+                    nextW[count] = stateW;
+                    nextV[count] = stateV;
+                    nextP[count] = parent;
+                    count++;
+                }
+            }
+            prevW = Arrays.copyOf(nextW, count);
+            prevV = Arrays.copyOf(nextV, count);
+            parents[i + 1] = Arrays.copyOf(nextP, count);
+            statesBuilt += count;
+        }
+        weights = prevW;
+        values = prevV;
+    }
+    
+    // Number of states on the final frontier
+    int size() {
+        return weights.length;
+    }
+    
+    // States kept over all levels, i.e. the parent pointers held
+    long statesBuilt() {
+        return statesBuilt;
+    }
+    
+    long weight(int state) {
+        return weights[state];
+    }
+    
+    double value(int state) {
+        return values[state];
+    }
+    
+    // Item indices (ascending) of the selection behind final state 'state'
+    List<Integer> selection(int state) {
+        List<Integer> selected = new ArrayList<>();
+        int index = state;
+        for (int i = itemWeights.length; i > 0; i--) {
+            int parent = parents[i][index];
+            if (parent < 0) {
+                selected.add(i - 1);
+                index = -parent - 1;
+            } else {
+                index = parent;
+            }
+        }
+        Collections.reverse(selected);
+        return selected;
+    }
+}
@@ -0,0 +1,42 @@
+import java.util.*;
+
+// Times the consecutive phases of one solve and reports each one to the listener as it ends
+class PhaseTimer {
+    private final SolverListener listener;
+    private final String solver;
+    private final long start;
+    private long phaseStart;
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    
+    PhaseTimer(SolverListener listener, String solver) {
+        this.listener = listener;
+        this.solver = solver;
+        this.start = System.nanoTime();
+        this.phaseStart = start;
+    }
+    
+    // Ends the running phase under the given name and starts the next one
+    void end(String phase) {
+        long now = System.nanoTime();
+        phaseNanos.merge(phase, now - phaseStart, Long::sum);
+        listener.onPhase(solver, phase, now - phaseStart);
+        phaseStart = now;
+    }
+    
+    // Nanoseconds since the solve started
+    long elapsed() {
+        return System.nanoTime() - start;
+    }
+    
+    Map<String, Long> phases() {
+        return phaseNanos;
+    }
+    
+    static Map<String, Double> toMillis(Map<String, Long> phaseNanos) {
+        Map<String, Double> millis = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : phaseNanos.entrySet()) {
+            millis.put(entry.getKey(), Math.round(entry.getValue() / 1e4) / 100.0);
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,214 @@
+import java.util.*;
+
+// Upper bounds for branch and bound nodes over investments sorted by descending
+// return-to-risk ratio. A node is described by the last decided position 'level' and the
+// profit and weight of its selection; every investment after 'level' is still open.
+// Prefix sums of the sorted risks and returns let the Dantzig bound find its critical
+// item with a binary search instead of walking the remaining items.
+class RatioBounds {
+    private final double[] risks;
+    private final double[] returns;
+    private final double[] prefixRisk;
+    private final double[] prefixReturn;
+    private final double capacity;
+    private final SectorConstraints constraints;
+    
+    RatioBounds(double[] risks, double[] returns, double capacity, SectorConstraints constraints) {
+        int n = risks.length;
+        this.risks = risks;
+        this.returns = returns;
+        this.capacity = capacity;
+        this.constraints = constraints;
+        prefixRisk = new double[n + 1];
+        prefixReturn = new double[n + 1];
+        for (int i = 0; i < n; i++) {
+            prefixRisk[i + 1] = prefixRisk[i] + risks[i];
+            prefixReturn[i + 1] = prefixReturn[i] + returns[i];
+        }
+    }
+    
+    // Linear relaxation: fill the open items in ratio order and take the first one that
+    // does not fit fractionally. O(log n) per call.
+    double dantzig(int level, double profit, double weight) {
+        int start = level + 1;
+        int critical = criticalItem(start, capacity - weight);
+        double used = prefixRisk[critical] - prefixRisk[start];
+        double bound = profit + prefixReturn[critical] - prefixReturn[start];
+        if (critical < risks.length) {
+            bound += (capacity - weight - used) * (returns[critical] / risks[critical]);
+        }
+        return bound;
+    }
+    
+    // Martello-Toth U2 bound restricted to the open items the sector maximums still allow.
+    // With c the critical item and r the capacity left before it, the optimum either skips c
+    // (fill r with the next item's ratio) or takes c (make room by giving back part of the
+    // previous item), so max(p + r * p[c+1]/w[c+1], p + p[c] - (w[c] - r) * p[c-1]/w[c-1])
+    // bounds it and is never above the Dantzig bound. sectorCounts[offset + s] holds the
+    // node's count for constrained sector s.
+    double martelloToth(int level, double profit, double weight, int[] sectorCounts, int offset) {
+        int n = risks.length;
+        int start = level + 1;
+        double residual = capacity - weight;
+        double filled = profit;
+        int previous = -1;
+        int critical;
+        int next;
+        
+        if (!hasSaturatedSector(sectorCounts, offset)) {
+            critical = criticalItem(start, residual);
+            filled += prefixReturn[critical] - prefixReturn[start];
+            residual -= prefixRisk[critical] - prefixRisk[start];
+            previous = critical > start ? critical - 1 : -1;
+            next = critical + 1;
+        } else {
+            // Items of a sector that is already at its maximum can never be added below this node
+            critical = nextAllowed(start, sectorCounts, offset);
+            while (critical < n && risks[critical] <= residual) {
+                residual -= risks[critical];
+                filled += returns[critical];
+                previous = critical;
+                critical = nextAllowed(critical + 1, sectorCounts, offset);
+            }
+            next = critical < n ? nextAllowed(critical + 1, sectorCounts, offset) : n;
+        }
+        
+        if (critical >= n) {
+            return filled;
+        }
+        double skipCritical = filled;
+        if (next < n) {
+            skipCritical += residual * (returns[next] / risks[next]);
+        }
+        double takeCritical = Double.NEGATIVE_INFINITY;
+        if (previous >= 0) {
+            takeCritical = filled + returns[critical]
+                - (risks[critical] - residual) * (returns[previous] / risks[previous]);
+        }
+        return Math.max(skipCritical, takeCritical);
+    }
+    
+    // Starting incumbent: the better of ratioDive and, when some sector has a minimum,
+    // reserveDive. Returns its return (portfolio stored in 'selected'), or 0 if neither
+    // found a feasible portfolio.
+    double greedyDive(long[] selected) {
+        double profit = ratioDive(selected);
+        if (constraints.initialUnmet > 0) {
+            long[] reserved = new long[selected.length];
+            double reservedProfit = reserveDive(reserved);
+            if (reservedProfit > profit) {
+                System.arraycopy(reserved, 0, selected, 0, selected.length);
+                profit = reservedProfit;
+            }
+        }
+        return profit;
+    }
+    
+    // Walks the ratio order once, taking every investment that fits and skipping the rest
+    // where the sector minimums allow it. Gets stuck (returns 0) when the capacity is used
+    // up before a sector minimum is met.
+    private double ratioDive(long[] selected) {
+        int[] counts = new int[constraints.sectorCount];
+        double weight = 0;
+        double profit = 0;
+        for (int i = 0; i < risks.length; i++) {
+            int s = constraints.sectorOf[i];
+            int count = s >= 0 ? counts[s] : 0;
+            if (weight + risks[i] <= capacity && constraints.canInclude(i, count)) {
+                weight += risks[i];
+                profit += returns[i];
+                selected[i >>> 6] |= 1L << i;
+                if (s >= 0) {
+                    counts[s]++;
+                }
+            } else if (!constraints.canExclude(i, count)) {
+                Arrays.fill(selected, 0L);
+                return 0;
+            }
+        }
+        return profit;
+    }
+    
+    // Meets the sector minimums first with the lightest investments of each such sector, then
+    // fills the remaining capacity in ratio order. Returns 0 if the minimums alone do not fit.
+    private double reserveDive(long[] selected) {
+        int n = risks.length;
+        int[] counts = new int[constraints.sectorCount];
+        double weight = 0;
+        double profit = 0;
+        
+        List<Integer> required = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int s = constraints.sectorOf[i];
+            if (s >= 0 && constraints.minCounts[s] > 0) {
+                required.add(i);
+            }
+        }
+        required.sort((a, b) -> Double.compare(risks[a], risks[b]));
+        for (int i : required) {
+            int s = constraints.sectorOf[i];
+            if (counts[s] < constraints.minCounts[s]) {
+                if (weight + risks[i] > capacity || !constraints.canInclude(i, counts[s])) {
+                    return 0;
+                }
+                weight += risks[i];
+                profit += returns[i];
+                selected[i >>> 6] |= 1L << i;
+                counts[s]++;
+            }
+        }
+        
+        for (int i = 0; i < n; i++) {
+            if ((selected[i >>> 6] & (1L << i)) != 0) {
+                continue;
+            }
+            int s = constraints.sectorOf[i];
+            if (weight + risks[i] <= capacity && constraints.canInclude(i, s >= 0 ? counts[s] : 0)) {
+                weight += risks[i];
+                profit += returns[i];
+                selected[i >>> 6] |= 1L << i;
+                if (s >= 0) {
+                    counts[s]++;
+                }
+            }
+        }
+        return profit;
+    }
+    
+    // First position in [start, n] whose item no longer fits when all items from start on are taken
+    int criticalItem(int start, double residual) {
+        double limit = prefixRisk[start] + residual;
+        int lo = start;
+        int hi = risks.length;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (prefixRisk[mid] <= limit) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+    
+    private boolean hasSaturatedSector(int[] sectorCounts, int offset) {
+        for (int s = 0; s < constraints.sectorCount; s++) {
+            if (sectorCounts[offset + s] >= constraints.maxCounts[s]) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private int nextAllowed(int from, int[] sectorCounts, int offset) {
+        int i = from;
+        while (i < risks.length) {
+            int s = constraints.sectorOf[i];
+            if (s < 0 || sectorCounts[offset + s] < constraints.maxCounts[s]) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+}
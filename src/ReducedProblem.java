@@ -0,0 +1,83 @@
+import java.math.BigDecimal;
+import java.util.*;
+
+// Output of KnapsackPreprocessor: the investments that were fixed into every optimal
+// portfolio, and the smaller core problem over the investments still undecided.
+// Solve the core with any solver, then expand() the core result back to the original indices.
+public class ReducedProblem {
+    private Investment[] investments;
+    private List<Integer> fixedIndices;
+    private Investment[] coreInvestments;
+    private int[] coreToOriginal;
+    private double residualTolerance;
+    private Map<String, Integer> minInvestments;
+    private Map<String, Integer> maxInvestments;
+    
+    public ReducedProblem(Investment[] investments, List<Integer> fixedIndices, int[] coreToOriginal,
+                          double riskTolerance,
+                          Map<String, Integer> minInvestments,
+                          Map<String, Integer> maxInvestments) {
+        this.investments = investments;
+        this.fixedIndices = fixedIndices;
+        this.coreToOriginal = coreToOriginal;
+        
+        coreInvestments = new Investment[coreToOriginal.length];
+        for (int i = 0; i < coreToOriginal.length; i++) {
+            coreInvestments[i] = investments[coreToOriginal[i]];
+        }
+        
+        // Subtract the fixed risks in decimal so that e.g. 30.0 - 7.0 - 5.5 stays exactly 17.5
+        // for solvers that scale the tolerance to integers
+        BigDecimal residual = BigDecimal.valueOf(riskTolerance);
+        this.minInvestments = new HashMap<>(minInvestments);
+        this.maxInvestments = new HashMap<>(maxInvestments);
+        for (int idx : fixedIndices) {
+            residual = residual.subtract(BigDecimal.valueOf(investments[idx].getRiskFactor()));
+            String sector = investments[idx].getSector();
+            this.minInvestments.computeIfPresent(sector, (s, min) -> Math.max(0, min - 1));
+            this.maxInvestments.computeIfPresent(sector, (s, max) -> max - 1);
+        }
+        residualTolerance = residual.doubleValue();
+    }
+    
+    // Original indices of the investments every optimal portfolio contains
+    public List<Integer> getFixedIndices() {
+        return fixedIndices;
+    }
+    
+    public Investment[] getCoreInvestments() {
+        return coreInvestments;
+    }
+    
+    // Risk tolerance left for the core after the fixed investments
+    public double getResidualTolerance() {
+        return residualTolerance;
+    }
+    
+    // Sector minimums for the core, reduced by the fixed investments
+    public Map<String, Integer> getMinInvestments() {
+        return minInvestments;
+    }
+    
+    // Sector maximums for the core, reduced by the fixed investments
+    public Map<String, Integer> getMaxInvestments() {
+        return maxInvestments;
+    }
+    
+    // Combines a result over getCoreInvestments() with the fixed investments
+    public KnapsackResult expand(KnapsackResult coreResult) {
+        List<Integer> selectedIndices = new ArrayList<>(fixedIndices);
+        for (int idx : coreResult.getSelectedIndices()) {
+            selectedIndices.add(coreToOriginal[idx]);
+        }
+        Collections.sort(selectedIndices);
+        
+        double totalReturn = 0;
+        double totalRisk = 0;
+        for (int idx : selectedIndices) {
+            totalReturn += investments[idx].getExpectedReturn();
+            totalRisk += investments[idx].getRiskFactor();
+        }
+        return new KnapsackResult(selectedIndices, totalReturn, totalRisk);
+    }
+}
@@ -0,0 +1,129 @@
+import java.util.*;
+
+public class SearchStats {
+    // Why the search ended: it ran out of open nodes (proven optimal, or within the solver's gap
+    // tolerance when it has one) or hit a SolveLimits limit
+    public enum Termination {
+        COMPLETED,
+        TIME_LIMIT,
+        NODE_LIMIT,
+        CANCELLED
+    }
+    
+    private long nodesExpanded;
+    private long prunedByBound;
+    private long prunedBySector;
+    private long prunedByRisk;
+    private int peakOpenNodes;
+    private double bestValue;
+    private double upperBound;
+    private List<Improvement> incumbentTimeline;
+    private Map<String, Long> phaseNanos;
+    private Termination termination;
+    
+    public SearchStats(long nodesExpanded, int peakOpenNodes, double bestValue, double upperBound) {
+        this(nodesExpanded, 0, 0, 0, peakOpenNodes, bestValue, upperBound,
+            new ArrayList<>(), new LinkedHashMap<>(), Termination.COMPLETED);
+    }
+    
+    public SearchStats(long nodesExpanded, long prunedByBound, long prunedBySector, long prunedByRisk,
+                       int peakOpenNodes, double bestValue, double upperBound,
+                       List<Improvement> incumbentTimeline, Map<String, Long> phaseNanos,
+                       Termination termination) {
+        this.nodesExpanded = nodesExpanded;
+        this.prunedByBound = prunedByBound;
+        this.prunedBySector = prunedBySector;
+        this.prunedByRisk = prunedByRisk;
+        this.peakOpenNodes = peakOpenNodes;
+        this.bestValue = bestValue;
+        this.upperBound = upperBound;
+        this.incumbentTimeline = incumbentTimeline;
+        this.phaseNanos = phaseNanos;
+        this.termination = termination;
+    }
+    
+    public long getNodesExpanded() {
+        return nodesExpanded;
+    }
+    
+    // Nodes dropped because their bound could not beat the incumbent
+    public long getPrunedByBound() {
+        return prunedByBound;
+    }
+    
+    // Children never created because they would break a sector maximum or make a minimum unreachable
+    public long getPrunedBySector() {
+        return prunedBySector;
+    }
+    
+    // Include children never created because the investment does not fit the remaining risk
+    public long getPrunedByRisk() {
+        return prunedByRisk;
+    }
+    
+    // Largest number of nodes held in the queue and dive stack at once
+    public int getPeakOpenNodes() {
+        return peakOpenNodes;
+    }
+    
+    public double getBestValue() {
+        return bestValue;
+    }
+    
+    // Proven upper bound on the optimal return when the search stopped
+    public double getUpperBound() {
+        return upperBound;
+    }
+    
+    // Distance between the upper bound and the returned portfolio; 0 means proven optimal
+    public double getOptimalityGap() {
+        return upperBound - bestValue;
+    }
+    
+    // Every time the incumbent improved, starting with the initial (greedy or warm-start) one
+    public List<Improvement> getIncumbentTimeline() {
+        return incumbentTimeline;
+    }
+    
+    // Wall time per phase in nanoseconds, in the order the phases ran
+    public Map<String, Long> getPhaseNanos() {
+        return phaseNanos;
+    }
+    
+    public Termination getTermination() {
+        return termination;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("Nodes expanded: %d, Pruned (bound/sector/risk): %d/%d/%d, Peak open nodes: %d, "
+                + "Best: %.2f, Upper bound: %.2f, Gap: %.2f",
+            nodesExpanded, prunedByBound, prunedBySector, prunedByRisk, peakOpenNodes,
+            bestValue, upperBound, getOptimalityGap());
+    }
+    
+    public static class Improvement {
+        private final long elapsedNanos;
+        private final long nodesExpanded;
+        private final double value;
+        
+        public Improvement(long elapsedNanos, long nodesExpanded, double value) {
+            this.elapsedNanos = elapsedNanos;
+            this.nodesExpanded = nodesExpanded;
+            this.value = value;
+        }
+        
+        // Time since the solve started
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+        
+        public long getNodesExpanded() {
+            return nodesExpanded;
+        }
+        
+        public double getValue() {
+            return value;
+        }
+    }
+}
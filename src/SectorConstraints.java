@@ -0,0 +1,102 @@
+import java.util.*;
+
+// Sector min/max constraints for a fixed search order of investments.
+// Constrained sectors are interned to ints (unconstrained ones get -1), and for every
+// position the number of later investments in the same sector is precomputed, so each
+// include/exclude decision can be checked in constant time:
+//  - including item i can only break the maximum of i's own sector
+//  - excluding item i can only make the minimum of i's own sector unreachable
+// A node that passed every check so far therefore stays able to meet all minimums, and
+// counting the sectors that are still below their minimum tells when it is a feasible portfolio.
+class SectorConstraints {
+    final int sectorCount;
+    final int[] sectorOf;
+    final int[] minCounts;
+    final int[] maxCounts;
+    final int initialUnmet;
+    
+    private final int[] remainingAfter;
+    private final boolean reachable;
+    
+    // 'order' lists the table rows in search order
+    SectorConstraints(InstrumentTable investments, int[] order,
+                      Map<String, Integer> minInvestments,
+                      Map<String, Integer> maxInvestments) {
+        int n = order.length;
+        
+        Map<String, Integer> sectorIds = new HashMap<>();
+        for (String s : minInvestments.keySet()) {
+            sectorIds.putIfAbsent(s, sectorIds.size());
+        }
+        for (String s : maxInvestments.keySet()) {
+            sectorIds.putIfAbsent(s, sectorIds.size());
+        }
+        sectorCount = sectorIds.size();
+        
+        minCounts = new int[sectorCount];
+        maxCounts = new int[sectorCount];
+        Arrays.fill(maxCounts, Integer.MAX_VALUE);
+        for (Map.Entry<String, Integer> entry : minInvestments.entrySet()) {
+            minCounts[sectorIds.get(entry.getKey())] = entry.getValue();
+        }
+        for (Map.Entry<String, Integer> entry : maxInvestments.entrySet()) {
+            maxCounts[sectorIds.get(entry.getKey())] = entry.getValue();
+        }
+        
+        // Constrained id of each of the table's sectors, then of each position
+        int[] constrainedIds = new int[investments.getSectorCount()];
+        for (int s = 0; s < constrainedIds.length; s++) {
+            constrainedIds[s] = sectorIds.getOrDefault(investments.getSectorName(s), -1);
+        }
+        sectorOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            sectorOf[i] = constrainedIds[investments.sectorIds[order[i]]];
+        }
+        
+        // Suffix counts: investments of the same sector after each position
+        remainingAfter = new int[n];
+        int[] seen = new int[sectorCount];
+        for (int i = n - 1; i >= 0; i--) {
+            int s = sectorOf[i];
+            if (s >= 0) {
+                remainingAfter[i] = seen[s]++;
+            }
+        }
+        
+        int unmet = 0;
+        boolean allReachable = true;
+        for (int s = 0; s < sectorCount; s++) {
+            if (minCounts[s] > 0) {
+                unmet++;
+            }
+            if (seen[s] < minCounts[s]) {
+                allReachable = false;
+            }
+        }
+        initialUnmet = unmet;
+        reachable = allReachable;
+    }
+    
+    // False when some sector minimum cannot be met even by taking every investment
+    boolean isReachable() {
+        return reachable;
+    }
+    
+    // Whether item can be taken when its sector already holds 'count' selected items
+    boolean canInclude(int item, int count) {
+        int s = sectorOf[item];
+        return s < 0 || count < maxCounts[s];
+    }
+    
+    // Whether item can be skipped without making its sector minimum unreachable
+    boolean canExclude(int item, int count) {
+        int s = sectorOf[item];
+        return s < 0 || count + remainingAfter[item] >= minCounts[s];
+    }
+    
+    // Whether taking item lifts its sector from below its minimum to exactly the minimum
+    boolean meetsMinimum(int item, int count) {
+        int s = sectorOf[item];
+        return s >= 0 && count + 1 == minCounts[s];
+    }
+}
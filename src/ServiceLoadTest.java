@@ -0,0 +1,172 @@
+import java.net.URI;
+import java.net.http.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Load test for OptimizationService over HTTP on the loopback interface. For each concurrency
+// level, that many clients send solve requests back to back for a fixed time; the report lists
+// completed requests per second, p50 and p99 latency of the completed ones, and how many were
+// turned away with 503 because the worker queue was full. Requests cycle through DP, greedy
+// and time-limited branch and bound on seeded InstanceGenerator instances.
+//
+// Usage: java -cp bin ServiceLoadTest [--quick] [workers] [queueCapacity]
+public class ServiceLoadTest {
+    private static final long SEED = 42;
+    private static final int INSTANCE_SIZE = 200;
+    private static final double CAPACITY_FRACTION = 0.05;
+    private static final long BNB_TIME_LIMIT_MILLIS = 50;
+    private static final int[] CONCURRENCY = {1, 2, 4, 8, 16, 32, 64, 128};
+    
+    public static void main(String[] args) throws Exception {
+        boolean quick = false;
+        List<Integer> numbers = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--quick")) {
+                quick = true;
+            } else {
+                numbers.add(Integer.parseInt(arg));
+            }
+        }
+        int workerCount = numbers.size() > 0 ? numbers.get(0) : Runtime.getRuntime().availableProcessors();
+        int queueCapacity = numbers.size() > 1 ? numbers.get(1) : 4 * workerCount;
+        long warmupMillis = quick ? 500 : 3000;
+        long runMillis = quick ? 1000 : 5000;
+        
+        try (OptimizationService service = new OptimizationService(workerCount, queueCapacity, SolverListener.NONE)) {
+            int port = service.start(0);
+            List<HttpRequest> requests = requests(port);
+            HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable);
+                    thread.setDaemon(true);
+                    return thread;
+                }))
+                .build();
+            System.out.printf("Workers: %d, queue capacity: %d%n", workerCount, queueCapacity);
+            run(client, requests, 4, warmupMillis);
+            
+            System.out.printf("%12s %12s %12s %12s %12s%n", "Concurrency", "req/s", "p50 ms", "p99 ms", "rejected");
+            for (int concurrency : CONCURRENCY) {
+                Result result = run(client, requests, concurrency, runMillis);
+                long[] latencies = result.latencies;
+                Arrays.sort(latencies);
+                System.out.printf("%12d %12.1f %12.2f %12.2f %12d%n", concurrency,
+                    latencies.length * 1e9 / result.elapsedNanos,
+                    percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6,
+                    result.rejected);
+            }
+        }
+    }
+    
+    // Latencies of the completed requests in nanoseconds, the number rejected, and the wall time
+    // from the first request until the last response, in-flight requests at the deadline included
+    private static class Result {
+        final long[] latencies;
+        final long rejected;
+        final long elapsedNanos;
+        
+        Result(long[] latencies, long rejected, long elapsedNanos) {
+            this.latencies = latencies;
+            this.rejected = rejected;
+            this.elapsedNanos = elapsedNanos;
+        }
+    }
+    
+    private static Result run(HttpClient client, List<HttpRequest> requests, int concurrency,
+                              long millis) throws Exception {
+        long start = System.nanoTime();
+        long end = start + millis * 1_000_000;
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        List<Future<Result>> futures = new ArrayList<>();
+        for (int c = 0; c < concurrency; c++) {
+            int first = c;
+            futures.add(clients.submit(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                long rejected = 0;
+                for (int i = first; System.nanoTime() < end; i++) {
+                    HttpRequest request = requests.get(i % requests.size());
+                    long sent = System.nanoTime();
+                    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                    long latency = System.nanoTime() - sent;
+                    if (response.statusCode() == 503) {
+                        rejected++;
+                        // Back off briefly, as Retry-After asks, so rejected clients do not spin
+                        Thread.sleep(1);
+                    } else if (response.statusCode() != 200) {
+                        throw new IllegalStateException("HTTP " + response.statusCode() + ": " + response.body());
+                    } else {
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, 2 * count);
+                        }
+                        latencies[count++] = latency;
+                    }
+                }
+                return new Result(Arrays.copyOf(latencies, count), rejected, System.nanoTime() - start);
+            }));
+        }
+        
+        long[] all = new long[0];
+        long rejected = 0;
+        for (Future<Result> future : futures) {
+            Result result = future.get();
+            int offset = all.length;
+            all = Arrays.copyOf(all, offset + result.latencies.length);
+            System.arraycopy(result.latencies, 0, all, offset, result.latencies.length);
+            rejected += result.rejected;
+        }
+        clients.shutdown();
+        return new Result(all, rejected, System.nanoTime() - start);
+    }
+    
+    // One request per algorithm and instance family
+    private static List<HttpRequest> requests(int port) {
+        List<HttpRequest> requests = new ArrayList<>();
+        for (InstanceGenerator.Family family : InstanceGenerator.Family.values()) {
+            Investment[] investments = new InstanceGenerator(SEED).generate(family, INSTANCE_SIZE);
+            double tolerance = InstanceGenerator.tolerance(investments, CAPACITY_FRACTION);
+            String body = csv(investments);
+            String base = "http://127.0.0.1:" + port + "/solve?tolerance=" + tolerance;
+            requests.add(post(base + "&algorithm=dp", body));
+            requests.add(post(base + "&algorithm=greedy", body));
+            requests.add(post(base + "&algorithm=branch-and-bound"
+                + "&min=" + sectorCounts(InstanceGenerator.minInvestments(investments))
+                + "&max=" + sectorCounts(InstanceGenerator.maxInvestments(investments))
+                + "&timeLimitMillis=" + BNB_TIME_LIMIT_MILLIS, body));
+        }
+        return requests;
+    }
+    
+    private static HttpRequest post(String uri, String body) {
+        return HttpRequest.newBuilder(URI.create(uri))
+            .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+            .build();
+    }
+    
+    private static String csv(Investment[] investments) {
+        StringBuilder csv = new StringBuilder("name,expectedReturn,riskFactor,sector\n");
+        for (Investment inv : investments) {
+            csv.append(inv.getName()).append(',').append(inv.getExpectedReturn()).append(',')
+               .append(inv.getRiskFactor()).append(',').append(inv.getSector()).append('\n');
+        }
+        return csv.toString();
+    }
+    
+    // URL-safe "Sector+1:1,Sector+2:1" for the min and max parameters
+    private static String sectorCounts(Map<String, Integer> counts) {
+        StringJoiner joiner = new StringJoiner(",");
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            joiner.add(entry.getKey().replace(' ', '+') + ":" + entry.getValue());
+        }
+        return joiner.toString();
+    }
+    
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1)];
+    }
+}
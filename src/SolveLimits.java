@@ -0,0 +1,55 @@
+import java.util.concurrent.TimeUnit;
+
+// Stopping rules for an anytime branch and bound solve. The search stops at whichever limit is
+// reached first and returns its incumbent; the solver's SearchStats then hold the proven upper
+// bound, the gap and the reason it stopped.
+public class SolveLimits {
+    public static final SolveLimits NONE = new SolveLimits(Long.MAX_VALUE, Long.MAX_VALUE, null);
+    
+    private final long timeLimitMillis;
+    // Saturated at Long.MAX_VALUE, which no solve reaches
+    private final long timeLimitNanos;
+    private final long maxNodes;
+    private final CancellationToken cancellationToken;
+    
+    public SolveLimits(long timeLimitMillis, long maxNodes) {
+        this(timeLimitMillis, maxNodes, null);
+    }
+    
+    // Long.MAX_VALUE means no limit; the token may be null
+    public SolveLimits(long timeLimitMillis, long maxNodes, CancellationToken cancellationToken) {
+        if (timeLimitMillis < 0 || maxNodes < 0) {
+            throw new IllegalArgumentException("Limits must not be negative");
+        }
+        this.timeLimitMillis = timeLimitMillis;
+        this.timeLimitNanos = TimeUnit.MILLISECONDS.toNanos(timeLimitMillis);
+        this.maxNodes = maxNodes;
+        this.cancellationToken = cancellationToken;
+    }
+    
+    // Wall time from the start of the solve, setup included
+    public long getTimeLimitMillis() {
+        return timeLimitMillis;
+    }
+    
+    // Most nodes the search may expand
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+    
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+    
+    // The limit that stops a solve running for 'elapsedNanos', ignoring the node budget,
+    // or null to keep going
+    SearchStats.Termination check(long elapsedNanos) {
+        if (cancellationToken != null && cancellationToken.isCancelled()) {
+            return SearchStats.Termination.CANCELLED;
+        }
+        if (elapsedNanos >= timeLimitNanos) {
+            return SearchStats.Termination.TIME_LIMIT;
+        }
+        return null;
+    }
+}
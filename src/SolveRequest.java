@@ -0,0 +1,61 @@
+import java.util.*;
+
+// One solve for OptimizationService: the instruments, the risk tolerance, the algorithm and,
+// for branch and bound, the sector constraints and stopping rules.
+public class SolveRequest {
+    public enum Algorithm {
+        DP,
+        GREEDY,
+        BRANCH_AND_BOUND
+    }
+    
+    private final Algorithm algorithm;
+    private final InstrumentTable investments;
+    private final double riskTolerance;
+    private final Map<String, Integer> minInvestments;
+    private final Map<String, Integer> maxInvestments;
+    private final SolveLimits limits;
+    
+    public SolveRequest(Algorithm algorithm, InstrumentTable investments, double riskTolerance) {
+        this(algorithm, investments, riskTolerance, new HashMap<>(), new HashMap<>(), SolveLimits.NONE);
+    }
+    
+    // The constraints and limits only apply to BRANCH_AND_BOUND
+    public SolveRequest(Algorithm algorithm, InstrumentTable investments, double riskTolerance,
+                        Map<String, Integer> minInvestments, Map<String, Integer> maxInvestments,
+                        SolveLimits limits) {
+        if (riskTolerance < 0) {
+            throw new IllegalArgumentException("Risk tolerance must not be negative");
+        }
+        this.algorithm = algorithm;
+        this.investments = investments;
+        this.riskTolerance = riskTolerance;
+        this.minInvestments = minInvestments;
+        this.maxInvestments = maxInvestments;
+        this.limits = limits;
+    }
+    
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+    
+    public InstrumentTable getInvestments() {
+        return investments;
+    }
+    
+    public double getRiskTolerance() {
+        return riskTolerance;
+    }
+    
+    public Map<String, Integer> getMinInvestments() {
+        return minInvestments;
+    }
+    
+    public Map<String, Integer> getMaxInvestments() {
+        return maxInvestments;
+    }
+    
+    public SolveLimits getLimits() {
+        return limits;
+    }
+}
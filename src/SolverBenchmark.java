@@ -0,0 +1,126 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.function.Supplier;
+
+// Throughput and allocation benchmark for the solvers over seeded InstanceGenerator families.
+// Each case is warmed up, then measured over several fixed-length iterations; the report
+// lists operations per second (mean and standard deviation across iterations), bytes
+// allocated per operation and the resulting allocation rate.
+//
+// Usage: java -cp bin SolverBenchmark [--quick] [filter]
+//   --quick   shorter warmup and measurement, for smoke runs
+//   filter    only run cases whose name contains this text, e.g. "greedy" or "n=1000 "
+public class SolverBenchmark {
+    private static final long SEED = 42;
+    private static final int[] SIZES = {10, 100, 1000, 10000, 100000};
+    private static final double[] CAPACITY_FRACTIONS = {0.05, 0.25};
+    
+    // KnapsackDP needs n x (tolerance * 100) table cells; larger cases are skipped
+    private static final long MAX_DP_CELLS = 200_000_000L;
+    // Branch and bound is exponential in the worst case; keep the hard families small and
+    // run it in hybrid mode so the open-node queue stays bounded
+    private static final int MAX_BNB_SIZE = 10000;
+    private static final int MAX_BNB_HARD_SIZE = 100;
+    private static final long MAX_BNB_OPEN_NODES = 100_000;
+    
+    private static volatile double sink;
+    
+    public static void main(String[] args) {
+        boolean quick = false;
+        String filter = "";
+        for (String arg : args) {
+            if (arg.equals("--quick")) {
+                quick = true;
+            } else {
+                filter = arg;
+            }
+        }
+        long warmupMillis = quick ? 200 : 2000;
+        long iterationMillis = quick ? 200 : 1000;
+        int iterations = quick ? 3 : 5;
+        
+        System.out.printf("%-58s %14s %12s %14s %12s%n",
+            "Case", "ops/s", "+/-", "bytes/op", "MB/s alloc");
+        for (InstanceGenerator.Family family : InstanceGenerator.Family.values()) {
+            for (int n : SIZES) {
+                Investment[] investments = new InstanceGenerator(SEED).generate(family, n);
+                Map<String, Integer> minInvestments = InstanceGenerator.minInvestments(investments);
+                Map<String, Integer> maxInvestments = InstanceGenerator.maxInvestments(investments);
+                for (double fraction : CAPACITY_FRACTIONS) {
+                    double tolerance = InstanceGenerator.tolerance(investments, fraction);
+                    String suffix = String.format(" %s n=%d cap=%.2f", family, n, fraction);
+                    long cells = (long) n * (long) (tolerance * 100 + 1);
+                    
+                    if (cells <= MAX_DP_CELLS) {
+                        run("dp" + suffix, filter, warmupMillis, iterationMillis, iterations,
+                            () -> new KnapsackDP().solve(investments, tolerance));
+                        run("dp-memory-bounded" + suffix, filter, warmupMillis, iterationMillis, iterations,
+                            () -> new KnapsackDP().solveMemoryBounded(investments, tolerance));
+                    }
+                    run("greedy" + suffix, filter, warmupMillis, iterationMillis, iterations,
+                        () -> new KnapsackGreedy().solve(investments, tolerance));
+                    boolean hard = family != InstanceGenerator.Family.UNCORRELATED;
+                    if (n <= (hard ? MAX_BNB_HARD_SIZE : MAX_BNB_SIZE)) {
+                        run("branch-and-bound" + suffix, filter, warmupMillis, iterationMillis, iterations,
+                            () -> new KnapsackBranchAndBound(KnapsackBranchAndBound.SearchStrategy.HYBRID,
+                                MAX_BNB_OPEN_NODES).solveWithConstraints(
+                                investments, tolerance, minInvestments, maxInvestments));
+                    }
+                }
+            }
+        }
+    }
+    
+    private static void run(String name, String filter, long warmupMillis, long iterationMillis,
+                            int iterations, Supplier<KnapsackResult> solve) {
+        if (!name.contains(filter)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        
+        // Warmup
+        long end = System.nanoTime() + warmupMillis * 1_000_000;
+        do {
+            sink += solve.get().getTotalReturn();
+        } while (System.nanoTime() < end);
+        
+        double[] opsPerSecond = new double[iterations];
+        long totalOps = 0;
+        long totalBytes = 0;
+        long totalNanos = 0;
+        for (int i = 0; i < iterations; i++) {
+            long ops = 0;
+            long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            long now;
+            do {
+                sink += solve.get().getTotalReturn();
+                ops++;
+                now = System.nanoTime();
+            } while (now - start < iterationMillis * 1_000_000);
+            long bytes = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+            opsPerSecond[i] = ops * 1e9 / (now - start);
+            totalOps += ops;
+            totalBytes += bytes;
+            totalNanos += now - start;
+        }
+        
+        double mean = 0;
+        for (double ops : opsPerSecond) {
+            mean += ops;
+        }
+        mean /= iterations;
+        double variance = 0;
+        for (double ops : opsPerSecond) {
+            variance += (ops - mean) * (ops - mean);
+        }
+        double deviation = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+        double bytesPerOp = (double) totalBytes / totalOps;
+        double allocationRate = totalBytes / 1e6 / (totalNanos / 1e9);
+        
+        System.out.printf("%-58s %14.2f %12.2f %14.0f %12.1f%n",
+            name, mean, deviation, bytesPerOp, allocationRate);
+    }
+}
@@ -0,0 +1,233 @@
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// Caches solver results for repeated problems. Two requests share an entry when they have the
+// same investments in any order (names are ignored, the solvers never read them), the same
+// tolerance and the same sector limits. On a miss the investments are put into a canonical
+// order (by return, risk, then sector) before solving, so every order of the same universe
+// gets the same portfolio, mapped back to the caller's indices.
+// Entries are evicted least recently used once there are more than maxEntries, and expire
+// ttlMillis after they were computed. Safe for concurrent use; the solve itself runs outside
+// the lock, so two threads missing on the same key may both solve it.
+public class SolverCache {
+    private enum SolverKind {
+        DP,
+        GREEDY,
+        BRANCH_AND_BOUND
+    }
+    
+    private static final Comparator<Investment> CANONICAL_ORDER =
+        Comparator.comparingDouble(Investment::getExpectedReturn)
+            .thenComparingDouble(Investment::getRiskFactor)
+            .thenComparing(Investment::getSector, Comparator.nullsFirst(Comparator.naturalOrder()));
+    
+    private final KnapsackDP dp;
+    private final KnapsackGreedy greedy;
+    private final KnapsackBranchAndBound bnb;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<InstanceKey, Entry> entries;
+    
+    private long hits;
+    private long misses;
+    private long evictions;
+    
+    public SolverCache(int maxEntries, long ttlMillis) {
+        this(new KnapsackDP(), new KnapsackGreedy(), new KnapsackBranchAndBound(), maxEntries, ttlMillis);
+    }
+    
+    public SolverCache(KnapsackDP dp, KnapsackGreedy greedy, KnapsackBranchAndBound bnb,
+                       int maxEntries, long ttlMillis) {
+        if (maxEntries <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Cache size and time to live must be positive");
+        }
+        this.dp = dp;
+        this.greedy = greedy;
+        this.bnb = bnb;
+        this.maxEntries = maxEntries;
+        // Saturates at Long.MAX_VALUE, so a huge TTL means entries never expire
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        // Access order makes the eldest entry the least recently used one
+        this.entries = new LinkedHashMap<InstanceKey, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<InstanceKey, Entry> eldest) {
+                if (size() > SolverCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    public KnapsackResult solveDP(Investment[] investments, double riskTolerance) {
+        return solve(SolverKind.DP, investments, riskTolerance, new HashMap<>(), new HashMap<>());
+    }
+    
+    public KnapsackResult solveGreedy(Investment[] investments, double riskTolerance) {
+        return solve(SolverKind.GREEDY, investments, riskTolerance, new HashMap<>(), new HashMap<>());
+    }
+    
+    public KnapsackResult solveWithConstraints(
+            Investment[] investments,
+            double riskTolerance,
+            Map<String, Integer> minInvestments,
+            Map<String, Integer> maxInvestments) {
+        return solve(SolverKind.BRANCH_AND_BOUND, investments, riskTolerance, minInvestments, maxInvestments);
+    }
+    
+    public synchronized long getHits() {
+        return hits;
+    }
+    
+    public synchronized long getMisses() {
+        return misses;
+    }
+    
+    // Entries dropped for size or expired on lookup
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    public synchronized void clear() {
+        entries.clear();
+    }
+    
+    private KnapsackResult solve(SolverKind kind, Investment[] investments, double riskTolerance,
+                                 Map<String, Integer> minInvestments, Map<String, Integer> maxInvestments) {
+        int n = investments.length;
+        
+        // canonicalToCaller[i] is the caller's index of the i-th investment in canonical order
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> CANONICAL_ORDER.compare(investments[a], investments[b]));
+        int[] canonicalToCaller = new int[n];
+        Investment[] canonical = new Investment[n];
+        for (int i = 0; i < n; i++) {
+            canonicalToCaller[i] = order[i];
+            canonical[i] = investments[order[i]];
+        }
+        
+        InstanceKey key = new InstanceKey(kind, canonical, riskTolerance, minInvestments, maxInvestments);
+        Entry entry = lookup(key);
+        if (entry == null) {
+            KnapsackResult result;
+            switch (kind) {
+                case DP:
+                    result = dp.solve(canonical, riskTolerance);
+                    break;
+                case GREEDY:
+                    result = greedy.solve(canonical, riskTolerance);
+                    break;
+                default:
+                    result = bnb.solveWithConstraints(canonical, riskTolerance, minInvestments, maxInvestments);
+                    break;
+            }
+            entry = new Entry(result, System.nanoTime());
+            synchronized (this) {
+                entries.put(key, entry);
+            }
+        }
+        
+        List<Integer> selectedIndices = new ArrayList<>();
+        for (int idx : entry.result.getSelectedIndices()) {
+            selectedIndices.add(canonicalToCaller[idx]);
+        }
+        Collections.sort(selectedIndices);
+        return new KnapsackResult(selectedIndices, entry.result.getTotalReturn(), entry.result.getTotalRisk());
+    }
+    
+    // Counts a hit or a miss; an expired entry is dropped and counts as an eviction and a miss
+    private synchronized Entry lookup(InstanceKey key) {
+        Entry entry = entries.get(key);
+        if (entry != null && System.nanoTime() - entry.createdAt > ttlNanos) {
+            entries.remove(key);
+            evictions++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+    
+    private static class Entry {
+        final KnapsackResult result;
+        final long createdAt;
+        
+        Entry(KnapsackResult result, long createdAt) {
+            this.result = result;
+            this.createdAt = createdAt;
+        }
+    }
+    
+    // Fingerprint of a problem: the canonical investments' return, risk and sector, the
+    // tolerance and the sector limits with zero minimums dropped. Compared in full, so two
+    // different problems never share an entry even if their hashes collide.
+    private static class InstanceKey {
+        final SolverKind kind;
+        final double[] returns;
+        final double[] risks;
+        final String[] sectors;
+        final double riskTolerance;
+        final Map<String, Integer> minInvestments;
+        final Map<String, Integer> maxInvestments;
+        final int hash;
+        
+        InstanceKey(SolverKind kind, Investment[] canonical, double riskTolerance,
+                    Map<String, Integer> minInvestments, Map<String, Integer> maxInvestments) {
+            int n = canonical.length;
+            this.kind = kind;
+            this.returns = new double[n];
+            this.risks = new double[n];
+            this.sectors = new String[n];
+            for (int i = 0; i < n; i++) {
+                returns[i] = canonical[i].getExpectedReturn();
+                risks[i] = canonical[i].getRiskFactor();
+                sectors[i] = canonical[i].getSector();
+            }
+            this.riskTolerance = riskTolerance;
+            this.minInvestments = new HashMap<>(minInvestments);
+            this.minInvestments.values().removeIf(min -> min <= 0);
+            this.maxInvestments = new HashMap<>(maxInvestments);
+            
+            int h = kind.hashCode();
+            h = 31 * h + Arrays.hashCode(returns);
+            h = 31 * h + Arrays.hashCode(risks);
+            h = 31 * h + Arrays.hashCode(sectors);
+            h = 31 * h + Double.hashCode(riskTolerance);
+            h = 31 * h + this.minInvestments.hashCode();
+            h = 31 * h + this.maxInvestments.hashCode();
+            this.hash = h;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof InstanceKey)) {
+                return false;
+            }
+            InstanceKey other = (InstanceKey) o;
+            return hash == other.hash
+                && kind == other.kind
+                && Double.compare(riskTolerance, other.riskTolerance) == 0
+                && Arrays.equals(returns, other.returns)
+                && Arrays.equals(risks, other.risks)
+                && Arrays.equals(sectors, other.sectors)
+                && minInvestments.equals(other.minInvestments)
+                && maxInvestments.equals(other.maxInvestments);
+        }
+        
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+// Callbacks from a running solver. All methods default to doing nothing, so a listener only
+// implements what it needs. They are called on the solving thread, a handful of times per
+// solve (never per node or per cell), and should return quickly.
+public interface SolverListener {
+    SolverListener NONE = new SolverListener() {};
+    
+    // A phase of a solve (e.g. "setup", "search", "fill", "backtrack") took 'nanos'
+    default void onPhase(String solver, String phase, long nanos) {
+    }
+    
+    // Branch and bound found a better portfolio
+    default void onIncumbent(String solver, double value, long nodesExpanded, long elapsedNanos) {
+    }
+    
+    default void onSearchCompleted(String solver, SearchStats stats) {
+    }
+    
+    default void onTableCompleted(String solver, DPStats stats) {
+    }
+}
@@ -0,0 +1,141 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import javax.management.*;
+
+// Listener that adds up solver statistics over many solves, from any number of threads.
+// Counters are LongAdders, so recording costs a few uncontended adds per solve. Read them
+// as a plain snapshot() map or register the instance as an MXBean and watch it over JMX.
+public class SolverMetrics implements SolverListener, SolverMetricsMXBean {
+    private final LongAdder solves = new LongAdder();
+    private final LongAdder nodesExpanded = new LongAdder();
+    private final LongAdder prunedByBound = new LongAdder();
+    private final LongAdder prunedBySector = new LongAdder();
+    private final LongAdder prunedByRisk = new LongAdder();
+    private final LongAccumulator peakOpenNodes = new LongAccumulator(Math::max, 0);
+    private final LongAdder incumbentImprovements = new LongAdder();
+    private final LongAdder dpCellsComputed = new LongAdder();
+    private final LongAccumulator peakDpTableBytes = new LongAccumulator(Math::max, 0);
+    private final ConcurrentMap<String, LongAdder> phaseNanos = new ConcurrentHashMap<>();
+    
+    @Override
+    public void onPhase(String solver, String phase, long nanos) {
+        phaseNanos.computeIfAbsent(solver + "." + phase, key -> new LongAdder()).add(nanos);
+    }
+    
+    @Override
+    public void onIncumbent(String solver, double value, long nodesExpanded, long elapsedNanos) {
+        incumbentImprovements.increment();
+    }
+    
+    @Override
+    public void onSearchCompleted(String solver, SearchStats stats) {
+        solves.increment();
+        nodesExpanded.add(stats.getNodesExpanded());
+        prunedByBound.add(stats.getPrunedByBound());
+        prunedBySector.add(stats.getPrunedBySector());
+        prunedByRisk.add(stats.getPrunedByRisk());
+        peakOpenNodes.accumulate(stats.getPeakOpenNodes());
+    }
+    
+    @Override
+    public void onTableCompleted(String solver, DPStats stats) {
+        solves.increment();
+        dpCellsComputed.add(stats.getCellsComputed());
+        peakDpTableBytes.accumulate(stats.getTableBytes());
+    }
+    
+    // Registers this instance with the platform MBean server, e.g. under
+    // "portfolio:type=SolverMetrics"
+    public void register(String objectName) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(objectName));
+    }
+    
+    // All counters and phase totals by name
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        snapshot.put("solves", getSolves());
+        snapshot.put("nodesExpanded", getNodesExpanded());
+        snapshot.put("prunedByBound", getPrunedByBound());
+        snapshot.put("prunedBySector", getPrunedBySector());
+        snapshot.put("prunedByRisk", getPrunedByRisk());
+        snapshot.put("peakOpenNodes", getPeakOpenNodes());
+        snapshot.put("incumbentImprovements", getIncumbentImprovements());
+        snapshot.put("dpCellsComputed", getDpCellsComputed());
+        snapshot.put("peakDpTableBytes", getPeakDpTableBytes());
+        for (Map.Entry<String, Long> entry : getPhaseNanos().entrySet()) {
+            snapshot.put("phaseNanos." + entry.getKey(), entry.getValue());
+        }
+        return snapshot;
+    }
+    
+    // Solves that reported a search or a table; greedy solves only report phases
+    @Override
+    public long getSolves() {
+        return solves.sum();
+    }
+    
+    @Override
+    public long getNodesExpanded() {
+        return nodesExpanded.sum();
+    }
+    
+    @Override
+    public long getPrunedByBound() {
+        return prunedByBound.sum();
+    }
+    
+    @Override
+    public long getPrunedBySector() {
+        return prunedBySector.sum();
+    }
+    
+    @Override
+    public long getPrunedByRisk() {
+        return prunedByRisk.sum();
+    }
+    
+    @Override
+    public long getPeakOpenNodes() {
+        return peakOpenNodes.get();
+    }
+    
+    @Override
+    public long getIncumbentImprovements() {
+        return incumbentImprovements.sum();
+    }
+    
+    @Override
+    public long getDpCellsComputed() {
+        return dpCellsComputed.sum();
+    }
+    
+    @Override
+    public long getPeakDpTableBytes() {
+        return peakDpTableBytes.get();
+    }
+    
+    @Override
+    public Map<String, Long> getPhaseNanos() {
+        Map<String, Long> totals = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : phaseNanos.entrySet()) {
+            totals.put(entry.getKey(), entry.getValue().sum());
+        }
+        return totals;
+    }
+    
+    @Override
+    public void reset() {
+        solves.reset();
+        nodesExpanded.reset();
+        prunedByBound.reset();
+        prunedBySector.reset();
+        prunedByRisk.reset();
+        peakOpenNodes.reset();
+        incumbentImprovements.reset();
+        dpCellsComputed.reset();
+        peakDpTableBytes.reset();
+        phaseNanos.clear();
+    }
+}
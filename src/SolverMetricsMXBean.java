@@ -0,0 +1,27 @@
+import java.util.Map;
+
+// JMX view of SolverMetrics
+public interface SolverMetricsMXBean {
+    long getSolves();
+    
+    long getNodesExpanded();
+    
+    long getPrunedByBound();
+    
+    long getPrunedBySector();
+    
+    long getPrunedByRisk();
+    
+    long getPeakOpenNodes();
+    
+    long getIncumbentImprovements();
+    
+    long getDpCellsComputed();
+    
+    long getPeakDpTableBytes();
+    
+    // Total nanoseconds per "solver.phase"
+    Map<String, Long> getPhaseNanos();
+    
+    void reset();
+}